@@ -0,0 +1,138 @@
+package nl.han.ica.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Symbol table voor geneste scopes, met opzoeken in O(1) ongeacht de diepte.
+ *
+ * Variabelen worden aangeduid met een klein id, dat per AST wordt uitgedeeld (VariableIds).
+ * Per id staat de binnenste binding vooraan; elke binding onthoudt de binding die hij verbergt, zodat er per
+ * id een stapel van bindingen ontstaat. Alle bindingen staan in één log. Een scope openen
+ * onthoudt alleen de lengte van die log (een undo mark); bij het sluiten worden de bindingen
+ * van de scope in omgekeerde volgorde teruggedraaid. Er wordt dus niets per scope gealloceerd.
+ *
+ * @param <V> waarde van een variabele, bijvoorbeeld zijn type
+ */
+public class SymbolTable<V> {
+
+	private static final int UNBOUND = -1;
+
+	//========================
+	// ATTRIBUTES
+	//========================
+	private int[] top = new int[16]; // Per id: index van de binnenste binding, of UNBOUND
+
+	// Log van bindingen
+	private int[] bindingIds = new int[16];
+	private Object[] bindingValues = new Object[16];
+	private int[] bindingShadows = new int[16]; // Binding die door deze binding verborgen wordt
+	private int bindingCount = 0;
+
+	private int[] marks = new int[8]; // Per open scope: bindingCount bij het openen
+	private int depth = 0;
+
+	public SymbolTable() {
+		Arrays.fill(top, UNBOUND);
+	}
+
+	//========================
+	// SCOPES
+	//========================
+
+	/**
+	 * Opent een nieuwe scope binnen de huidige.
+	 */
+	public void pushScope() {
+		if (depth == marks.length) {
+			marks = Arrays.copyOf(marks, depth * 2);
+		}
+		marks[depth++] = bindingCount;
+	}
+
+	/**
+	 * Sluit de binnenste scope; alle bindingen uit die scope verdwijnen.
+	 */
+	public void popScope() {
+		if (depth == 0) {
+			throw new IllegalStateException("Er is geen scope open");
+		}
+		int mark = marks[--depth];
+		while (bindingCount > mark) {
+			bindingCount--;
+			top[bindingIds[bindingCount]] = bindingShadows[bindingCount];
+			bindingValues[bindingCount] = null;
+		}
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	//========================
+	// VARIABLES
+	//========================
+
+	/**
+	 * Definieert de variabele in de binnenste scope. Stond hij al in die scope, dan wordt
+	 * alleen de waarde vervangen; een binding in een buitenste scope wordt verborgen.
+	 * @param id id van de variabele
+	 * @param value de waarde
+	 */
+	public void define(int id, V value) {
+		ensureId(id);
+		int current = top[id];
+		int scopeStart = depth > 0 ? marks[depth - 1] : 0;
+		if (current != UNBOUND && current >= scopeStart) {
+			bindingValues[current] = value;
+			return;
+		}
+		if (bindingCount == bindingIds.length) {
+			int capacity = bindingCount * 2;
+			bindingIds = Arrays.copyOf(bindingIds, capacity);
+			bindingValues = Arrays.copyOf(bindingValues, capacity);
+			bindingShadows = Arrays.copyOf(bindingShadows, capacity);
+		}
+		bindingIds[bindingCount] = id;
+		bindingValues[bindingCount] = value;
+		bindingShadows[bindingCount] = current;
+		top[id] = bindingCount++;
+	}
+
+	/**
+	 * Geeft de binnenste binding van de variabele een nieuwe waarde; bestaat hij nog niet, dan wordt
+	 * hij in de binnenste scope gedefinieerd.
+	 * @param id id van de variabele
+	 * @param value de waarde
+	 */
+	public void assign(int id, V value) {
+		if (isDefined(id)) {
+			bindingValues[top[id]] = value;
+		} else {
+			define(id, value);
+		}
+	}
+
+	/**
+	 * @param id id van de variabele
+	 * @return de waarde van de binnenste binding, of null als de variabele niet gedefinieerd is
+	 */
+	@SuppressWarnings("unchecked")
+	public V lookup(int id) {
+		if (id >= top.length || top[id] == UNBOUND) {
+			return null;
+		}
+		return (V) bindingValues[top[id]];
+	}
+
+	public boolean isDefined(int id) {
+		return id < top.length && top[id] != UNBOUND;
+	}
+
+	private void ensureId(int id) {
+		if (id >= top.length) {
+			int length = top.length;
+			top = Arrays.copyOf(top, Math.max(id + 1, length * 2));
+			Arrays.fill(top, length, top.length, UNBOUND);
+		}
+	}
+}
@@ -2,23 +2,49 @@ package nl.han.ica.icss;
 
 import nl.han.ica.icss.ast.AST;
 import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.BinaryAST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Expression;
+import nl.han.ica.icss.ast.FlatAST;
+import nl.han.ica.icss.ast.IfClause;
+import nl.han.ica.icss.ast.Stylesheet;
+import nl.han.ica.icss.ast.Traversal;
+import nl.han.ica.icss.ast.VariableAssignment;
+import nl.han.ica.icss.ast.VariableIds;
+import nl.han.ica.icss.ast.VariableReference;
 import nl.han.ica.icss.checker.Checker;
 import nl.han.ica.icss.checker.SemanticError;
 import nl.han.ica.icss.generator.Generator;
 import nl.han.ica.icss.parser.ASTListener;
+import nl.han.ica.icss.parser.DFACache;
 import nl.han.ica.icss.parser.ICSSLexer;
 import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.parser.Lexer;
+import nl.han.ica.icss.parser.MappedCharStream;
+import nl.han.ica.icss.parser.ParseProfile;
+import nl.han.ica.icss.parser.TopLevelScanner;
+import nl.han.ica.icss.trace.CompileTracer;
+import nl.han.ica.icss.trace.PrintTracer;
 import nl.han.ica.icss.transforms.Evaluator;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Pipeline implements ANTLRErrorListener {
 
@@ -28,6 +54,31 @@ public class Pipeline implements ANTLRErrorListener {
     private boolean transformed = false;
     private List<String> errors;
 
+    //Parse options
+    private boolean twoStageParsing = false;
+    private boolean handWrittenLexer = false;
+    private boolean parallelParsing = false;
+    private PredictionMode predictionMode = null;
+    private ParseProfile parseProfile = null;
+
+    //Parallel parsing: minimum number of characters per parse task
+    private static final int MIN_CHUNK_LENGTH = 16 * 1024;
+
+    //Incremental parsing: the last parsed text and, while the AST still matches it,
+    //the source range of every top-level item in ast.root.body
+    private String source = null;
+    private int[] regionStarts = null;
+    private int[] regionEnds = null;
+
+    //Ids of the variable names of the current stylesheet. A full parse starts a new table, parseEdit
+    //keeps it, so the spliced items share their ids with the unchanged ones.
+    private VariableIds variableIds = new VariableIds();
+
+    //Checker of the last check; after parseEdit it only checks what the edit can affect
+    private Checker checker = null;
+
+    private CompileTracer tracer = CompileTracer.NONE;
+
     public Pipeline() {
         errors = new ArrayList<>();
     }
@@ -35,6 +86,13 @@ public class Pipeline implements ANTLRErrorListener {
     public AST getAST() {
         return ast;
     }
+    /**
+     * Errors of the last parse, check or stream compile. Syntax errors have the form
+     * {@code "Syntax error: line L:C message"}, with the line and column in the whole input, also
+     * when the input was parsed in parallel chunks or item by item. Semantic errors have the form
+     * {@code "ERROR: message"}.
+     * @return the errors, in source order
+     */
     public List<String> getErrors() {
         return errors;
     }
@@ -48,30 +106,294 @@ public class Pipeline implements ANTLRErrorListener {
         return transformed;
     }
 
+    /**
+     * Enables two-stage parsing: first try the fast SLL prediction mode and bail out on the
+     * first syntax error, then re-parse with full LL prediction only when SLL failed.
+     * Full LL is always correct, SLL is correct for every input it accepts.
+     * @param twoStageParsing true to try SLL first
+     */
+    public void setTwoStageParsing(boolean twoStageParsing) {
+        this.twoStageParsing = twoStageParsing;
+    }
+    public boolean isTwoStageParsing() {
+        return twoStageParsing;
+    }
+    /**
+     * Switches between Antlr's generated ICSSLexer (default) and the hand-written
+     * {@link Lexer}, which produces the same tokens without running the ATN simulator.
+     * @param handWrittenLexer true to lex with the hand-written lexer
+     */
+    public void setHandWrittenLexer(boolean handWrittenLexer) {
+        this.handWrittenLexer = handWrittenLexer;
+    }
+    public boolean isHandWrittenLexer() {
+        return handWrittenLexer;
+    }
+    /**
+     * Enables parallel parsing of large inputs. The text is split into chunks of complete
+     * top-level items by {@link TopLevelScanner}, the chunks are parsed by separate parsers on the
+     * common fork/join pool and the results are joined into one Stylesheet in source order.
+     * Every chunk is lexed from its own line and column, so syntax errors have the same line
+     * numbers as without parallel parsing.
+     * @param parallelParsing true to parse large inputs in parallel
+     */
+    public void setParallelParsing(boolean parallelParsing) {
+        this.parallelParsing = parallelParsing;
+    }
+    public boolean isParallelParsing() {
+        return parallelParsing;
+    }
+    /**
+     * @return the prediction mode that produced the last parse result (SLL or LL),
+     * or null when nothing has been parsed yet
+     */
+    public PredictionMode getPredictionMode() {
+        return predictionMode;
+    }
+
+    /**
+     * Enables the grammar profiling mode: every parse runs with Antlr's ProfilingATNSimulator and
+     * its prediction statistics are added to {@link #getParseProfile()}. Profiling makes parsing
+     * slower, so it is meant for measuring only. Disabling it discards the collected statistics.
+     * @param profiling true to profile every following parse
+     */
+    public void setProfiling(boolean profiling) {
+        if (!profiling) {
+            parseProfile = null;
+        } else if (parseProfile == null) {
+            parseProfile = new ParseProfile();
+        }
+    }
+    public boolean isProfiling() {
+        return parseProfile != null;
+    }
+    /**
+     * @return the statistics of all parses since profiling was enabled, or null when it is disabled
+     */
+    public ParseProfile getParseProfile() {
+        return parseProfile;
+    }
+    /**
+     * Sets the listener for the compile trace: the start and end of check, transform and generate,
+     * and every node and value the evaluator computes. The default tracer does nothing.
+     * @param tracer the tracer, for example a {@link PrintTracer}, or null for no tracing
+     */
+    public void setTracer(CompileTracer tracer) {
+        this.tracer = tracer != null ? tracer : CompileTracer.NONE;
+    }
+    public CompileTracer getTracer() {
+        return tracer;
+    }
+    public void printParseProfile() {
+        if (parseProfile != null) {
+            System.out.print(parseProfile.report());
+        }
+    }
+
+    /**
+     * Describes the size of Antlr's DFA caches, which are shared by all pipelines.
+     * The size can be bounded with {@link DFACache#setMaxStates(int)}.
+     * @return the number of DFA states per parser decision and lexer mode
+     */
+    public String getDFACacheReport() {
+        return DFACache.report();
+    }
+
     public void parseString(String input) {
+        parse(CharStreams.fromString(input), input);
+        source = input;
+        findRegions();
+    }
 
-        //Lex (with Antlr's generated lexer)
-        CharStream inputStream = CharStreams.fromString(input);
-        ICSSLexer lexer = new ICSSLexer(inputStream);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(this);
-        errors.clear();
-        try {
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
+    /**
+     * Parses a file without reading it into a String first. The file is memory-mapped
+     * and lexed as 8-bit characters, see {@link MappedCharStream}.
+     * @param path the ICSS file to parse
+     * @throws IOException when the file cannot be read
+     */
+    public void parseFile(Path path) throws IOException {
+        MappedCharStream inputStream = MappedCharStream.fromPath(path);
+        parse(inputStream, inputStream);
+    }
 
-            //Parse (with Antlr's generated parser)
-            ICSSParser parser = new ICSSParser(tokens);
-            parser.removeErrorListeners();
-            parser.addErrorListener(this);
+    /**
+     * Parses everything that is left in the channel. The channel is not closed.
+     * @param channel the channel to read ICSS from
+     * @throws IOException when reading from the channel fails
+     */
+    public void parseChannel(ReadableByteChannel channel) throws IOException {
+        MappedCharStream inputStream = MappedCharStream.fromChannel(channel);
+        parse(inputStream, inputStream);
+    }
+
+    /**
+     * Parses the new version of the last parsed text. Only the part that differs from the
+     * previous text is re-parsed when possible, see {@link #parseEdit(int, int, String)}.
+     * @param input the complete new text
+     */
+    public void reparseString(String input) {
+        if (source == null) {
+            parseString(input);
+            return;
+        }
+        int max = Math.min(source.length(), input.length());
+        int prefix = 0;
+        while (prefix < max && source.charAt(prefix) == input.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && source.charAt(source.length() - 1 - suffix) == input.charAt(input.length() - 1 - suffix)) {
+            suffix++;
+        }
+        parseEdit(prefix, source.length() - prefix - suffix, input.substring(prefix, input.length() - suffix));
+    }
 
-            ParseTree parseTree = parser.stylesheet();
+    /**
+     * Applies a text edit to the last parsed text and updates the AST. Only the top-level
+     * rulesets and variable assignments touched by the edit are re-parsed; the resulting nodes
+     * replace the old ones in the Stylesheet body. When the edited region no longer parses on its
+     * own (for example because braces became unbalanced), the whole text is parsed instead, so the
+     * result and the error messages are always the same as with {@link #parseString(String)}.
+     * @param offset position of the edit in the last parsed text
+     * @param removedLength number of characters removed at offset
+     * @param insertedText text inserted at offset
+     */
+    public void parseEdit(int offset, int removedLength, String insertedText) {
+        if (source == null) {
+            throw new IllegalStateException("There is no parsed text to edit");
+        }
+        String newSource = source.substring(0, offset) + insertedText + source.substring(offset + removedLength);
+        if (regionStarts == null) {
+            parseString(newSource);
+            return;
+        }
 
-            //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(listener, parseTree);
+        //Find the items touched by the edit (including items directly adjacent to it)
+        int editEnd = offset + removedLength;
+        int first = lowerBound(regionEnds, offset);
+        int last = lowerBound(regionStarts, editEnd + 1) - 1;
+        int windowStart = offset;
+        int windowEnd = editEnd;
+        if (first <= last) {
+            windowStart = Math.min(regionStarts[first], offset);
+            windowEnd = Math.max(regionEnds[last], editEnd);
+        }
+        int delta = insertedText.length() - removedLength;
+        windowEnd += delta;
 
-            this.ast = listener.getAST();
+        //The edited window has to consist of complete top-level items
+        TopLevelScanner scanner = new TopLevelScanner(windowStart);
+        int[] starts = new int[4];
+        int[] ends = new int[4];
+        int count = 0;
+        while (scanner.next(newSource, windowEnd)) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = scanner.getItemStart();
+            ends[count] = scanner.getItemEnd();
+            count++;
+        }
+
+        List<String> windowErrors = new ArrayList<>();
+        AST windowAST = null;
+        if (!scanner.isInsideItem()) {
+            windowAST = parseStylesheet(CharStreams.fromString(newSource.substring(windowStart, windowEnd)),
+                    new ErrorCollector(windowErrors), 1, 0).ast;
+        }
+        DFACache.trim();
+        if (windowAST == null || !windowErrors.isEmpty() || windowAST.root.body.size() != count) {
+            parseString(newSource);
+            return;
+        }
+
+        //Splice the new items into a copy of the body and shift the regions after the window.
+        //The old AST is left as it was, the unchanged items are shared with the new one.
+        ArrayList<ASTNode> body = new ArrayList<>(ast.root.body);
+        int removedItems = first <= last ? last - first + 1 : 0;
+        int index = first <= last ? first : lowerBound(regionStarts, offset);
+        body.subList(index, index + removedItems).clear();
+        body.addAll(index, windowAST.root.body);
+        ast = new AST(new Stylesheet(body));
+
+        int size = regionStarts.length - removedItems + count;
+        int[] newStarts = new int[size];
+        int[] newEnds = new int[size];
+        System.arraycopy(regionStarts, 0, newStarts, 0, index);
+        System.arraycopy(regionEnds, 0, newEnds, 0, index);
+        System.arraycopy(starts, 0, newStarts, index, count);
+        System.arraycopy(ends, 0, newEnds, index, count);
+        for (int i = index + removedItems; i < regionStarts.length; i++) {
+            newStarts[i - removedItems + count] = regionStarts[i] + delta;
+            newEnds[i - removedItems + count] = regionEnds[i] + delta;
+        }
+        regionStarts = newStarts;
+        regionEnds = newEnds;
+        source = newSource;
+
+        errors.clear();
+        parsed = true;
+        checked = transformed = false;
+    }
+
+    //Index of the first value >= key in a sorted array
+    private static int lowerBound(int[] values, int key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    //Records the source range of each top-level item, if they line up with the AST
+    private void findRegions() {
+        regionStarts = regionEnds = null;
+        if (!parsed) {
+            return;
+        }
+        List<ASTNode> body = ast.root.body;
+        int[] starts = new int[body.size()];
+        int[] ends = new int[body.size()];
+        int count = 0;
+        TopLevelScanner scanner = new TopLevelScanner();
+        while (scanner.next(source, source.length())) {
+            if (count == body.size()) {
+                return;
+            }
+            starts[count] = scanner.getItemStart();
+            ends[count] = scanner.getItemEnd();
+            count++;
+        }
+        if (count == body.size() && !scanner.isInsideItem()) {
+            regionStarts = starts;
+            regionEnds = ends;
+        }
+    }
+
+    //The text is only used for parallel parsing and has to be the same as the input stream
+    private void parse(CharStream inputStream, CharSequence text) {
+        errors.clear();
+        source = null;
+        regionStarts = regionEnds = null;
+        checker = null;
+        variableIds = new VariableIds();
+        try {
+            AST parallelAST = parallelParsing ? parseParallel(text) : null;
+            if (parallelAST != null) {
+                this.ast = parallelAST;
+            } else {
+                ParseResult result = parseStylesheet(inputStream, this, 1, 0);
+                this.ast = result.ast;
+                predictionMode = result.predictionMode;
+            }
 
         } catch (RecognitionException e) {
             this.ast = new AST();
@@ -81,14 +403,225 @@ public class Pipeline implements ANTLRErrorListener {
             this.ast = new AST();
             errors.add("Syntax error");
         }
+        //Once per parse, not per chunk, so parallel workers never wait for the write lock
+        DFACache.trim();
         parsed = errors.isEmpty();
         checked = transformed = false;
     }
+
+    /**
+     * Parses the text in chunks on the fork/join pool.
+     * @return the joined AST, or null when the text is too small to split
+     */
+    private AST parseParallel(CharSequence text) {
+        //Pre-scan: complete top-level items, grouped into chunks of at least MIN_CHUNK_LENGTH
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int chunkLength = Math.max(MIN_CHUNK_LENGTH, text.length() / (parallelism * 4));
+        List<Chunk> chunks = new ArrayList<>();
+        TopLevelScanner scanner = new TopLevelScanner();
+        Chunk chunk = null;
+        while (scanner.next(text, text.length())) {
+            if (chunk == null) {
+                chunk = new Chunk(scanner.getItemStart(), scanner.getItemLine(), scanner.getItemCharPositionInLine());
+            }
+            chunk.end = scanner.getItemEnd();
+            if (chunk.end - chunk.start >= chunkLength) {
+                chunks.add(chunk);
+                chunk = null;
+            }
+        }
+        if (scanner.isInsideItem()) {
+            //Unterminated last item, the parser reports the error
+            if (chunk == null) {
+                chunk = new Chunk(scanner.getItemStart(), scanner.getItemLine(), scanner.getItemCharPositionInLine());
+            }
+            chunk.end = text.length();
+        }
+        if (chunk != null) {
+            chunks.add(chunk);
+        }
+        if (chunks.size() < 2) {
+            return null;
+        }
+
+        ForkJoinPool.commonPool().invoke(new ParseTask(text, chunks, 0, chunks.size()));
+
+        //Stitch the chunks together in source order
+        AST result = new AST();
+        predictionMode = PredictionMode.SLL;
+        for (Chunk parsedChunk : chunks) {
+            errors.addAll(parsedChunk.errors);
+            result.root.body.addAll(parsedChunk.body);
+            if (parsedChunk.predictionMode == PredictionMode.LL) {
+                predictionMode = PredictionMode.LL;
+            }
+        }
+        return result;
+    }
+
+    //Parses one chunk with its own lexer and parser, so chunks can be parsed at the same time
+    private void parseChunk(CharSequence text, Chunk chunk) {
+        CharStream inputStream = text instanceof MappedCharStream
+                ? ((MappedCharStream) text).slice(chunk.start, chunk.end)
+                : CharStreams.fromString(text.subSequence(chunk.start, chunk.end).toString());
+        ParseResult result = parseStylesheet(inputStream, new ErrorCollector(chunk.errors),
+                chunk.line, chunk.charPositionInLine);
+        chunk.body = result.ast.root.body;
+        chunk.predictionMode = result.predictionMode;
+    }
+
+    /**
+     * Parses a stylesheet with a new lexer and parser. Only reads the parse options, so it can be
+     * called from several threads at once.
+     * @param line line of the first character, for the line numbers in tokens and error messages
+     * @param charPositionInLine column of the first character
+     */
+    private ParseResult parseStylesheet(CharStream inputStream, ANTLRErrorListener errorListener,
+                                        int line, int charPositionInLine) {
+        ParseResult result;
+        DFACache.beginParse();
+        try {
+            result = runParser(inputStream, errorListener, line, charPositionInLine);
+        } finally {
+            DFACache.endParse();
+        }
+        return result;
+    }
+
+    private ParseResult runParser(CharStream inputStream, ANTLRErrorListener errorListener,
+                                  int line, int charPositionInLine) {
+        //Lex (with Antlr's generated lexer or the hand-written one)
+        TokenSource lexer = createLexer(inputStream, errorListener, line, charPositionInLine);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+
+        //Parse (with Antlr's generated parser). The AST is built while parsing,
+        //so no parse tree is kept in memory.
+        ICSSParser parser = new ICSSParser(tokens);
+        parser.setBuildParseTree(false);
+        ParseProfile profile = parseProfile;
+        ParseProfile.Recorder recorder = null;
+        if (profile != null) {
+            parser.setProfile(true);
+            recorder = profile.newRecorder();
+        }
+        ASTListener listener = null;
+        PredictionMode mode = null;
+
+        if (twoStageParsing) {
+            //Stage 1: SLL, give up on the first syntax error
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.removeErrorListeners();
+            listener = new ASTListener(variableIds);
+            parser.addParseListener(listener);
+            if (recorder != null) {
+                parser.addParseListener(recorder);
+            }
+            try {
+                parser.stylesheet();
+                mode = PredictionMode.SLL;
+            } catch (ParseCancellationException e) {
+                //Rewind the (already buffered) tokens and try again with full LL. The rules of
+                //the failed attempt are not counted, the LL parse calls them again.
+                parser.reset();
+                parser.removeParseListeners();
+                listener = null;
+                if (recorder != null) {
+                    recorder = profile.newRecorder();
+                }
+            }
+        }
+
+        if (listener == null) {
+            //Stage 2 (or the only stage): full LL with error reporting and recovery
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.removeErrorListeners();
+            parser.addErrorListener(errorListener);
+            listener = new ASTListener(variableIds);
+            parser.addParseListener(listener);
+            if (recorder != null) {
+                parser.addParseListener(recorder);
+            }
+            parser.stylesheet();
+            mode = PredictionMode.LL;
+        }
+
+        if (profile != null) {
+            profile.add(parser.getParseInfo().getDecisionInfo(), recorder);
+        }
+        return new ParseResult(listener.getAST(), mode);
+    }
+
+    private TokenSource createLexer(CharStream inputStream, ANTLRErrorListener errorListener,
+                                    int line, int charPositionInLine) {
+        if (handWrittenLexer) {
+            Lexer lexer = new Lexer(inputStream);
+            lexer.addErrorListener(errorListener);
+            lexer.setLine(line);
+            lexer.setCharPositionInLine(charPositionInLine);
+            return lexer;
+        }
+        ICSSLexer lexer = new ICSSLexer(inputStream);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+        lexer.setLine(line);
+        lexer.setCharPositionInLine(charPositionInLine);
+        return lexer;
+    }
+
+    /**
+     * Saves the current AST in the binary {@link BinaryAST} format, together with the errors on
+     * its nodes and whether it has been checked.
+     * @param path the file to write, usually with extension {@link BinaryAST#EXTENSION}
+     * @throws IOException when the file cannot be written
+     */
+    public void saveBinary(Path path) throws IOException {
+        if (ast == null || ast.root == null) {
+            throw new IllegalStateException("There is no AST to save");
+        }
+        new BinaryAST(FlatAST.fromAST(ast), checked).write(path);
+    }
+
+    /**
+     * Loads an AST saved by {@link #saveBinary(Path)} instead of parsing a stylesheet. An AST that
+     * was saved after a successful check is loaded as checked, so {@link #check()} can be skipped.
+     * The loaded AST has no source text, so {@link #parseEdit(int, int, String)} is not possible.
+     * @param path the .icssb file to read
+     * @throws IOException when the file cannot be read or is not a valid .icssb file
+     */
+    public void loadBinary(Path path) throws IOException {
+        BinaryAST binary = BinaryAST.read(path);
+        errors.clear();
+        source = null;
+        regionStarts = regionEnds = null;
+        predictionMode = null;
+        checker = null;
+
+        ast = binary.getAST().toAST();
+        for (SemanticError e : ast.getErrors()) {
+            errors.add(e.toString());
+        }
+        parsed = true;
+        checked = binary.isChecked() && errors.isEmpty();
+        transformed = false;
+    }
+
     public boolean check() {
             if(ast == null)
                 return false;
 
-           (new Checker()).check(this.ast);
+           tracer.stageStart("check");
+           if (checker != null) {
+               //Items reused by parseEdit keep their errors unless the edit affects them
+               checker.recheck(this.ast);
+           } else {
+               this.ast.clearErrors();
+               checker = new Checker();
+               checker.check(this.ast);
+           }
+
+            tracer.stageEnd("check", this.ast);
 
             ArrayList<SemanticError> errors = this.ast.getErrors();
             if (!errors.isEmpty()) {
@@ -110,29 +643,158 @@ public class Pipeline implements ANTLRErrorListener {
         if(ast == null)
             return;
 
-        (new Evaluator()).apply(ast);
-
-        // Debug: print hele AST
-        System.out.println("=== AST Debug ===");
-        printAST(ast.root, 0);
-        System.out.println("=== End AST ===");
+        //The evaluator returns a new AST and leaves the parsed one untouched
+        tracer.stageStart("transform");
+        ast = (new Evaluator(tracer)).apply(ast);
+        //The AST no longer matches the source text
+        regionStarts = regionEnds = null;
+        checker = null;
+        tracer.stageEnd("transform", ast);
 
         transformed = errors.isEmpty();
     }
 
     public void printAST(ASTNode node, int indent) {
-        String indentation = " ".repeat(indent);  // inspringing voor hiërarchie
-        System.out.println(indentation + node.getNodeLabel());
-
-        for (ASTNode child : node.getChildren()) {
-            printAST(child, indent + 2); // 2 spaties per niveau
-        }
+        new PrintTracer(System.out).dump(node, indent);
     }
 
 
     public String generate() {
+        tracer.stageStart("generate");
+        Generator generator = new Generator();
+        String css = generator.generate(ast);
+        tracer.stageEnd("generate", ast);
+        return css;
+    }
+
+    /**
+     * Compiles ICSS to CSS in constant memory. The input is split into top-level rulesets and
+     * variable assignments, and each one is parsed, checked, evaluated and written to the output
+     * before the next one is read. Only the global variables are kept between them, so the whole
+     * AST never exists at once. The output is the same as parse, check, transform and generate.
+     *
+     * After the first error no more output is written, but the rest of the input is still checked
+     * so all errors are reported. A variable assigned in an item with syntax errors counts as
+     * unknown: semantic errors that depend on it are not reported, just like a full parse reports
+     * only the syntax errors. The pipeline's own AST is not changed.
+     * @param input the ICSS to compile, not closed
+     * @param output receives the generated CSS, not closed or flushed
+     * @return true when the whole input compiled without errors
+     * @throws IOException when reading or writing fails
+     */
+    public boolean compileStream(Reader input, Writer output) throws IOException {
+        errors.clear();
+        Checker checker = new Checker();
+        checker.begin();
+        Evaluator evaluator = new Evaluator();
+        evaluator.begin();
         Generator generator = new Generator();
-        return generator.generate(ast);
+        Set<String> unknownVariables = new HashSet<>();
+
+        StringBuilder pending = new StringBuilder();
+        TopLevelScanner scanner = new TopLevelScanner();
+        char[] block = new char[8192];
+        boolean first = true;
+        boolean eof = false;
+
+        while (!eof) {
+            int read = input.read(block);
+            if (read < 0) {
+                eof = true;
+            } else {
+                pending.append(block, 0, read);
+            }
+
+            while (scanner.next(pending, pending.length())) {
+                String part = pending.substring(scanner.getItemStart(), scanner.getItemEnd());
+                first = compilePart(part, scanner, checker, evaluator, generator, unknownVariables, output, first);
+            }
+            if (eof && scanner.isInsideItem()) {
+                //Unterminated last item, let the parser report it
+                String part = pending.substring(scanner.getItemStart());
+                first = compilePart(part, scanner, checker, evaluator, generator, unknownVariables, output, first);
+            }
+
+            //Drop the text that has been compiled
+            int consumed = scanner.isInsideItem() ? scanner.getItemStart() : scanner.getPosition();
+            pending.delete(0, consumed);
+            scanner.shift(consumed);
+        }
+        return errors.isEmpty();
+    }
+
+    //Compiles one top-level item, returns whether the next output is still the first
+    private boolean compilePart(String text, TopLevelScanner scanner, Checker checker, Evaluator evaluator,
+                                Generator generator, Set<String> unknownVariables, Writer output,
+                                boolean first) throws IOException {
+        int errorCount = errors.size();
+        AST part = parseStylesheet(CharStreams.fromString(text), this,
+                scanner.getItemLine(), scanner.getItemCharPositionInLine()).ast;
+        DFACache.trim();
+        if (errors.size() > errorCount) {
+            //Not checked, so whatever the item assigns is unknown from here on
+            for (ASTNode item : part.root.body) {
+                if (item instanceof VariableAssignment && ((VariableAssignment) item).name != null) {
+                    unknownVariables.add(((VariableAssignment) item).name.name);
+                }
+            }
+            return first;
+        }
+
+        checker.checkNext(part);
+        reportSemanticErrors(part, unknownVariables);
+        if (errorCount > 0 || errors.size() > errorCount) {
+            return first;
+        }
+
+        String css = generator.generate(evaluator.applyNext(part));
+        if (css.isEmpty()) {
+            return first;
+        }
+        if (!first) {
+            output.write("\n\n");
+        }
+        output.write(css);
+        return false;
+    }
+
+    //Adds the errors of a checked part, except the ones caused by an unknown variable. A variable
+    //assigned from an unknown one becomes unknown as well.
+    private void reportSemanticErrors(AST part, Set<String> unknownVariables) {
+        new Traversal().walk(part.root, node -> {
+            boolean unknown = !unknownVariables.isEmpty() && usesUnknown(node, unknownVariables);
+            if (node instanceof VariableAssignment && unknown) {
+                unknownVariables.add(((VariableAssignment) node).name.name);
+            }
+            if (node.hasError() && !unknown) {
+                errors.add(node.getError().toString());
+            }
+            return true;
+        });
+    }
+
+    //Whether the value a node's error is about refers to an unknown variable
+    private static boolean usesUnknown(ASTNode node, Set<String> unknownVariables) {
+        Expression expression;
+        if (node instanceof Expression) {
+            expression = (Expression) node;
+        } else if (node instanceof Declaration) {
+            expression = ((Declaration) node).expression;
+        } else if (node instanceof VariableAssignment) {
+            expression = ((VariableAssignment) node).expression;
+        } else if (node instanceof IfClause) {
+            expression = ((IfClause) node).conditionalExpression;
+        } else {
+            return false;
+        }
+        boolean[] found = {false};
+        new Traversal().walk(expression, child -> {
+            if (child instanceof VariableReference && unknownVariables.contains(((VariableReference) child).name)) {
+                found[0] = true;
+            }
+            return !found[0];
+        });
+        return found[0];
     }
 
     //Catch ANTLR errors
@@ -154,6 +816,79 @@ public class Pipeline implements ANTLRErrorListener {
     @Override
     public void syntaxError(Recognizer<?, ?> arg0, Object arg1, int arg2,
                             int arg3, String arg4, RecognitionException arg5) {
-        errors.add("Syntax error: " + arg4);
+        errors.add(syntaxErrorMessage(arg2, arg3, arg4));
+    }
+
+    //Same format for every parse mode, see getErrors
+    private static String syntaxErrorMessage(int line, int charPositionInLine, String msg) {
+        return "Syntax error: line " + line + ":" + charPositionInLine + " " + msg;
+    }
+
+    //The AST of a parse and the prediction mode that produced it
+    private static class ParseResult {
+        private final AST ast;
+        private final PredictionMode predictionMode;
+
+        ParseResult(AST ast, PredictionMode predictionMode) {
+            this.ast = ast;
+            this.predictionMode = predictionMode;
+        }
+    }
+
+    //A range of complete top-level items that is parsed on its own
+    private static class Chunk {
+        private final int start;
+        private int end;
+        private final int line;
+        private final int charPositionInLine;
+        private List<ASTNode> body;
+        private PredictionMode predictionMode;
+        private final List<String> errors = new ArrayList<>();
+
+        Chunk(int start, int line, int charPositionInLine) {
+            this.start = start;
+            this.line = line;
+            this.charPositionInLine = charPositionInLine;
+        }
+    }
+
+    //Splits a range of chunks in two until one chunk is left, and parses that one
+    private class ParseTask extends RecursiveAction {
+        private final CharSequence text;
+        private final List<Chunk> chunks;
+        private final int from;
+        private final int to;
+
+        ParseTask(CharSequence text, List<Chunk> chunks, int from, int to) {
+            this.text = text;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                parseChunk(text, chunks.get(from));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(text, chunks, from, middle), new ParseTask(text, chunks, middle, to));
+        }
+    }
+
+    //Collects the errors of a separate parse, in the same format as the pipeline itself
+    private static class ErrorCollector extends BaseErrorListener {
+        private final List<String> errors;
+
+        ErrorCollector(List<String> errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            errors.add(syntaxErrorMessage(line, charPositionInLine, msg));
+        }
     }
 }
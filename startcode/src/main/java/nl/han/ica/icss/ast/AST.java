@@ -21,16 +21,20 @@ public class AST {
 	}
     public ArrayList<SemanticError> getErrors() {
 	    ArrayList<SemanticError> errors = new ArrayList<>();
-        collectErrors(errors,root);
+	    // Zonder recursie, zodat ook een diep geneste AST doorlopen kan worden
+        new Traversal().walk(root, node -> {
+            if(node.hasError()) {
+                errors.add(node.getError());
+            }
+            return true;
+        });
         return errors;
     }
-    private void collectErrors(ArrayList<SemanticError> errors, ASTNode node) {
-	    if(node.hasError()) {
-	        errors.add(node.getError());
-        }
-        for(ASTNode child: node.getChildren()) {
-	        collectErrors(errors,child);
-        }
+    public void clearErrors() {
+        new Traversal().walk(root, node -> {
+            node.clearError();
+            return true;
+        });
     }
 	@Override
 	public String toString() {
@@ -2,19 +2,43 @@ package nl.han.ica.icss.ast;
 
 import nl.han.ica.icss.checker.SemanticError;
 import java.util.ArrayList;
-import java.util.List;
-
-public class ASTNode {
+import java.util.function.Consumer;
+
+/**
+ * Knoop in de AST. Een knoop wordt opgebouwd met {@link #addChild(ASTNode)} en daarna niet meer
+ * veranderd: transformaties maken nieuwe knopen en hergebruiken de onveranderde subbomen, zodat
+ * een AST gedeeld en vaker geëvalueerd kan worden. Alleen de fouten van de Checker worden op de
+ * knopen zelf gezet.
+ *
+ * De parent van een knoop is daarom niet betrouwbaar. Hij wordt alleen door addChild gezet:
+ * een knoop die door een transformatie of {@link NodeTable} hergebruikt wordt, wijst nog naar
+ * de oude ouder of naar een van zijn ouders, en de nieuwe knopen van een transformatie hebben
+ * geen parent. Loop een boom dus van de wortel af door, bijvoorbeeld met {@link Traversal}.
+ */
+public abstract class ASTNode {
 
     private SemanticError error = null;
     protected ASTNode parent = null;
 
+    // Gezet door de NodeTable waar deze knoop gedeeld wordt, met de hashCode van dat moment
+    NodeTable table = null;
+    int structuralHash;
+
     protected ArrayList<ASTNode> children = new ArrayList<>();
 
+    /**
+     * @return de knoop waar deze knoop met addChild aan toegevoegd is, of null
+     * @deprecated niet gedefinieerd voor gedeelde of getransformeerde knopen, zie {@link ASTNode}
+     */
+    @Deprecated
     public ASTNode getParent() {
         return parent;
     }
 
+    /**
+     * @deprecated de parent wordt niet bijgehouden als knopen gedeeld worden, zie {@link ASTNode}
+     */
+    @Deprecated
     public void setParent(ASTNode parent) {
         this.parent = parent;
     }
@@ -23,6 +47,45 @@ public class ASTNode {
         return children;
     }
 
+    /**
+     * Aantal kinderen, in dezelfde volgorde als {@link #getChildren()}. Samen met
+     * {@link #getChild(int)} kunnen de kinderen doorlopen worden zonder een lijst te maken.
+     * @return aantal kinderen
+     */
+    public int getChildCount() {
+        return children.size();
+    }
+
+    /**
+     * @param index positie van het kind, van 0 tot {@link #getChildCount()}
+     * @return het kind op die positie
+     */
+    public ASTNode getChild(int index) {
+        return children.get(index);
+    }
+
+    /**
+     * Voert de actie uit voor elk kind, op volgorde, zonder een lijst te maken.
+     * @param action de uit te voeren actie
+     */
+    public void forEachChild(Consumer<? super ASTNode> action) {
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            action.accept(getChild(i));
+        }
+    }
+
+    // Kind op positie index voor knopen met twee optionele kinderen; null telt niet mee
+    protected static ASTNode childOfPair(ASTNode first, ASTNode second, int index) {
+        if (first != null) {
+            if (index == 0)
+                return first;
+            index--;
+        }
+        if (second != null && index == 0)
+            return second;
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds");
+    }
+
     public ASTNode addChild(ASTNode child) {
         child.setParent(this);
         children.add(child);
@@ -39,6 +102,14 @@ public class ASTNode {
         return "ASTNode";
     }
 
+    /**
+     * Roept de methode van de visitor aan die bij het type van deze knoop hoort.
+     * @param visitor de bezoeker
+     * @param context wordt ongewijzigd aan de visitor doorgegeven
+     * @return het resultaat van de visitor
+     */
+    public abstract <R, C> R accept(ASTVisitor<R, C> visitor, C context);
+
     public SemanticError getError() {
         return this.error;
     }
@@ -47,37 +118,57 @@ public class ASTNode {
         this.error = new SemanticError(description);
     }
 
+    public void clearError() {
+        this.error = null;
+    }
+
     public boolean hasError() {
         return error != null;
     }
 
+    /**
+     * @return true als de knoop uit een {@link NodeTable} komt; hij wordt dan gedeeld en mag niet
+     * meer veranderd worden
+     */
+    public boolean isInterned() {
+        return table != null;
+    }
+
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
-        toString(result);
-        return result.toString();
-    }
+        new Traversal().walk(this, new Traversal.Walker() {
+            @Override
+            public boolean enter(ASTNode node) {
+                result.append("[").append(node.getNodeLabel()).append("|");
+                return true;
+            }
 
-    private void toString(StringBuilder builder) {
-        builder.append("[");
-        builder.append(getNodeLabel());
-        builder.append("|");
-        for (ASTNode child : getChildren()) {
-            child.toString(builder);
-        }
-        builder.append("]");
+            @Override
+            public void exit(ASTNode node) {
+                result.append("]");
+            }
+        });
+        return result.toString();
     }
 
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof ASTNode))
             return false;
-        List<ASTNode> thisChildren = this.getChildren();
-        List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
-        if (otherChildren.size() != thisChildren.size())
+        ASTNode other = (ASTNode) o;
+        if (this == other)
+            return true;
+        if (table != null && other.table != null) {
+            // Binnen één tabel bestaat elke structuur maar één keer
+            if (table == other.table || structuralHash != other.structuralHash)
+                return false;
+        }
+        int count = this.getChildCount();
+        if (other.getChildCount() != count)
             return false;
-        for (int i = 0; i < thisChildren.size(); i++) {
-            if (!thisChildren.get(i).equals(otherChildren.get(i))) {
+        for (int i = 0; i < count; i++) {
+            if (!this.getChild(i).equals(other.getChild(i))) {
                 return false;
             }
         }
@@ -0,0 +1,64 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+/**
+ * Bezoeker van de AST: één methode per concreet knooptype.
+ *
+ * Een pass roept {@code node.accept(visitor, context)} aan en komt dan met één virtuele aanroep
+ * in de methode voor het echte type van de knoop, zonder instanceof ladders. Er zijn bewust geen
+ * standaardimplementaties: een nieuw knooptype is pas te gebruiken als iedere pass er een
+ * methode voor heeft.
+ *
+ * @param <R> resultaat van een bezoek, bijvoorbeeld het type of de waarde van een expressie
+ * @param <C> extra informatie die aan het bezoek meegegeven wordt
+ */
+public interface ASTVisitor<R, C> {
+
+	R visitStylesheet(Stylesheet node, C context);
+
+	R visitStylerule(Stylerule node, C context);
+
+	R visitDeclaration(Declaration node, C context);
+
+	R visitPropertyName(PropertyName node, C context);
+
+	R visitVariableAssignment(VariableAssignment node, C context);
+
+	R visitVariableReference(VariableReference node, C context);
+
+	R visitIfClause(IfClause node, C context);
+
+	R visitElseClause(ElseClause node, C context);
+
+	// Selectors
+	R visitClassSelector(ClassSelector node, C context);
+
+	R visitIdSelector(IdSelector node, C context);
+
+	R visitTagSelector(TagSelector node, C context);
+
+	// Operations
+	R visitAddOperation(AddOperation node, C context);
+
+	R visitSubtractOperation(SubtractOperation node, C context);
+
+	R visitMultiplyOperation(MultiplyOperation node, C context);
+
+	// Literals
+	R visitBoolLiteral(BoolLiteral node, C context);
+
+	R visitColorLiteral(ColorLiteral node, C context);
+
+	R visitPercentageLiteral(PercentageLiteral node, C context);
+
+	R visitPixelLiteral(PixelLiteral node, C context);
+
+	R visitScalarLiteral(ScalarLiteral node, C context);
+}
@@ -0,0 +1,309 @@
+package nl.han.ica.icss.ast;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Binair bestandsformaat (.icssb) voor een AST, zodat een stylesheet zonder lexen, parsen en
+ * checken opnieuw geladen kan worden.
+ *
+ * Het formaat volgt {@link FlatAST}: de knopen staan in pre-order en elke tekst staat maar één
+ * keer in de stringtabel. Alle getallen zijn varints (7 bits per byte, laagste eerst); de waarde
+ * van een knoop is daarnaast zigzag-gecodeerd omdat literals negatief kunnen zijn.
+ * <pre>
+ * magic       "ICSB"
+ * version     byte, zie {@link #VERSION}
+ * flags       byte, bit 0: de AST is gecheckt
+ * size        varint aantal knopen
+ * strings     varint aantal, per tekst varint lengte en UTF-8 bytes
+ * nodes       per knoop een byte soort, varint waarde en varint aantal kinderen
+ * errors      varint aantal, per fout varint knoop en varint index in de fouttabel
+ * messages    fouttabel: varint aantal, per beschrijving varint lengte en UTF-8 bytes
+ * </pre>
+ */
+public class BinaryAST {
+
+	public static final byte VERSION = 1;
+	public static final String EXTENSION = ".icssb";
+
+	private static final byte[] MAGIC = {'I', 'C', 'S', 'B'};
+	private static final int FLAG_CHECKED = 1;
+
+	//========================
+	// ATTRIBUTES
+	//========================
+	private final FlatAST ast;
+	private final boolean checked;
+
+	public BinaryAST(FlatAST ast, boolean checked) {
+		this.ast = ast;
+		this.checked = checked;
+	}
+
+	public FlatAST getAST() {
+		return ast;
+	}
+
+	/**
+	 * @return true als de AST bij het opslaan gecheckt was en dus niet opnieuw gecheckt hoeft te worden
+	 */
+	public boolean isChecked() {
+		return checked;
+	}
+
+	//========================
+	// FILES
+	//========================
+
+	/**
+	 * Schrijft de AST naar een bestand; een bestaand bestand wordt overschreven.
+	 * @param path het bestand, meestal met extensie {@link #EXTENSION}
+	 * @throws IOException als het schrijven mislukt
+	 */
+	public void write(Path path) throws IOException {
+		ByteBuffer buffer = encode();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Leest een AST uit een bestand. Het bestand wordt gememory-mapt.
+	 * @param path het .icssb bestand
+	 * @return de ingelezen AST
+	 * @throws IOException als het lezen mislukt of het bestand geen geldige .icssb is
+	 */
+	public static BinaryAST read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Bestand is te groot: " + channel.size() + " bytes");
+			}
+			return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	//========================
+	// ENCODING
+	//========================
+
+	/**
+	 * @return de gecodeerde AST, van positie 0 tot limit
+	 */
+	public ByteBuffer encode() {
+		int errorCount = 0;
+		for (int node = 0; node < ast.size(); node++) {
+			if (ast.getError(node) != null) errorCount++;
+		}
+		// Foutbeschrijvingen komen in een eigen tabel achter de knopen
+		LinkedHashMap<String, Integer> messages = new LinkedHashMap<>();
+
+		Writer writer = new Writer(ast.size() * 4 + 64);
+		writer.buffer.put(MAGIC);
+		writer.buffer.put(VERSION);
+		writer.buffer.put((byte) (checked ? FLAG_CHECKED : 0));
+		writer.putVarint(ast.size());
+
+		writer.putVarint(ast.stringCount());
+		for (int id = 0; id < ast.stringCount(); id++) {
+			writer.putString(ast.string(id));
+		}
+
+		for (int node = 0; node < ast.size(); node++) {
+			writer.ensure(1);
+			writer.buffer.put(ast.kind(node));
+			writer.putVarint(zigzag(ast.intValue(node)));
+			writer.putVarint(ast.childCount(node));
+		}
+
+		writer.putVarint(errorCount);
+		for (int node = 0; node < ast.size() && errorCount > 0; node++) {
+			if (ast.getError(node) != null) {
+				writer.putVarint(node);
+				writer.putVarint(messages.computeIfAbsent(ast.getError(node), message -> messages.size()));
+			}
+		}
+		writer.putVarint(messages.size());
+		for (String message : messages.keySet()) {
+			writer.putString(message);
+		}
+
+		writer.buffer.flip();
+		return writer.buffer;
+	}
+
+	/**
+	 * @param buffer gecodeerde AST vanaf de huidige positie
+	 * @return de gedecodeerde AST
+	 * @throws IOException als de buffer geen geldige .icssb bevat
+	 */
+	public static BinaryAST decode(ByteBuffer buffer) throws IOException {
+		try {
+			for (byte expected : MAGIC) {
+				if (buffer.get() != expected) {
+					throw new IOException("Geen " + EXTENSION + " bestand");
+				}
+			}
+			byte version = buffer.get();
+			if (version != VERSION) {
+				throw new IOException("Versie " + version + " van " + EXTENSION + " wordt niet ondersteund");
+			}
+			boolean checked = (buffer.get() & FLAG_CHECKED) != 0;
+			int size = getCount(buffer);
+			if (size > buffer.remaining() / 3) {
+				// Elke knoop is minstens drie bytes
+				throw new IOException("Onvolledig " + EXTENSION + " bestand");
+			}
+
+			FlatAST ast = new FlatAST(size);
+			int stringCount = getCount(buffer);
+			for (int id = 0; id < stringCount; id++) {
+				if (ast.intern(getString(buffer)) != id) {
+					throw new IOException("Dubbele tekst in de stringtabel");
+				}
+			}
+			readNodes(buffer, size, ast);
+
+			int errorCount = getCount(buffer);
+			int[] errorNodes = new int[errorCount];
+			int[] errorIds = new int[errorCount];
+			for (int i = 0; i < errorCount; i++) {
+				errorNodes[i] = getCount(buffer);
+				errorIds[i] = getCount(buffer);
+			}
+			String[] messages = new String[getCount(buffer)];
+			for (int id = 0; id < messages.length; id++) {
+				messages[id] = getString(buffer);
+			}
+			for (int i = 0; i < errorCount; i++) {
+				if (errorNodes[i] >= size || errorIds[i] >= messages.length) {
+					throw new IOException("Ongeldige fout in " + EXTENSION + " bestand");
+				}
+				ast.setError(errorNodes[i], messages[errorIds[i]]);
+			}
+			return new BinaryAST(ast, checked);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Onvolledig " + EXTENSION + " bestand", e);
+		}
+	}
+
+	// Leest de knopen in pre-order; het aantal kinderen bepaalt wanneer een knoop afgesloten wordt
+	private static void readNodes(ByteBuffer buffer, int size, FlatAST ast) throws IOException {
+		int[] remaining = new int[16]; // Per open knoop: aantal kinderen dat nog moet komen
+		int depth = 0;
+		for (int node = 0; node < size; node++) {
+			if (node > 0 && depth == 0) {
+				throw new IOException("Meer dan één root in " + EXTENSION + " bestand");
+			}
+			byte kind = buffer.get();
+			int value = unzigzag(getVarint(buffer));
+			int children = getCount(buffer);
+			if (kind < FlatAST.STYLESHEET || kind > FlatAST.SCALAR_LITERAL) {
+				throw new IOException("Onbekende knoopsoort " + kind);
+			}
+			if (FlatAST.hasText(kind) && (value < 0 || value >= ast.stringCount())) {
+				throw new IOException("Ongeldig string id " + value);
+			}
+
+			ast.begin(kind, value);
+			if (children > 0) {
+				if (depth == remaining.length) {
+					remaining = Arrays.copyOf(remaining, depth * 2);
+				}
+				remaining[depth++] = children;
+			} else {
+				ast.end();
+				// Sluit alle ouders waarvan dit het laatste kind was
+				while (depth > 0 && --remaining[depth - 1] == 0) {
+					ast.end();
+					depth--;
+				}
+			}
+		}
+		if (depth != 0) {
+			throw new IOException("Onvolledig " + EXTENSION + " bestand");
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) throws IOException {
+		int length = getCount(buffer);
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// Een varint die een aantal of index is en dus niet negatief mag zijn
+	private static int getCount(ByteBuffer buffer) throws IOException {
+		int count = getVarint(buffer);
+		if (count < 0) {
+			throw new IOException("Ongeldig aantal " + count);
+		}
+		return count;
+	}
+
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static int getVarint(ByteBuffer buffer) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buffer.get();
+			result |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return result;
+			}
+		}
+		throw new IOException("Ongeldige varint");
+	}
+
+	// Groeiende buffer voor het coderen
+	private static class Writer {
+		private ByteBuffer buffer;
+
+		Writer(int capacity) {
+			buffer = ByteBuffer.allocate(capacity);
+		}
+
+		void ensure(int bytes) {
+			if (buffer.remaining() < bytes) {
+				ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+				buffer.flip();
+				bigger.put(buffer);
+				buffer = bigger;
+			}
+		}
+
+		void putVarint(int value) {
+			ensure(5);
+			while ((value & ~0x7F) != 0) {
+				buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		void putString(String text) {
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			putVarint(bytes.length);
+			ensure(bytes.length);
+			buffer.put(bytes);
+		}
+	}
+}
@@ -22,6 +22,11 @@ public class Declaration extends ASTNode {
 	    return "Declaration";
 	}
 
+	@Override
+	public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+		return visitor.visitDeclaration(this, context);
+	}
+
 	@Override
 	public ArrayList<ASTNode> getChildren() {
 
@@ -33,6 +38,14 @@ public class Declaration extends ASTNode {
 		return children;
 	}
 	@Override
+	public int getChildCount() {
+		return (property != null ? 1 : 0) + (expression != null ? 1 : 0);
+	}
+	@Override
+	public ASTNode getChild(int index) {
+		return childOfPair(property, expression, index);
+	}
+	@Override
 	public ASTNode addChild(ASTNode child) {
 		if(child instanceof PropertyName) {
 			property = (PropertyName) child;
@@ -53,6 +66,7 @@ public class Declaration extends ASTNode {
 	}
 	@Override
 	public int hashCode() {
+		if (isInterned()) return structuralHash;
 		return Objects.hash(property, expression);
 	}
 }
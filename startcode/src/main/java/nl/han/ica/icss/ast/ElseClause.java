@@ -18,6 +18,12 @@ public class ElseClause extends ASTNode{
     public String getNodeLabel() {
         return "Else_Clause";
     }
+
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitElseClause(this, context);
+    }
+
     @Override
     public ArrayList<ASTNode> getChildren() {
         ArrayList<ASTNode> children = new ArrayList<>();
@@ -26,6 +32,15 @@ public class ElseClause extends ASTNode{
         return children;
     }
 
+    @Override
+    public int getChildCount() {
+        return body.size();
+    }
+    @Override
+    public ASTNode getChild(int index) {
+        return body.get(index);
+    }
+
     @Override
     public ASTNode addChild(ASTNode child) {
 
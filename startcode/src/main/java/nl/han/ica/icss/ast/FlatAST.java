@@ -0,0 +1,598 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.ast.types.Operator;
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Compacte AST voor grote stylesheets: alle knopen staan in parallelle arrays in plaats van als
+ * losse objecten met elk een parent, een error en een eigen lijst met kinderen.
+ *
+ * Een knoop is een int: zijn positie in de arrays. De knopen staan in pre-order, dus de kinderen
+ * van een knoop volgen direct op de knoop zelf, en {@link #end(int)} is de positie na de hele
+ * subboom. De kinderen doorloop je zonder te alloceren met
+ * <pre>
+ * for (int child = flat.firstChild(node); child &lt; flat.end(node); child = flat.end(child))
+ * </pre>
+ * De kinderen staan in dezelfde volgorde als bij {@link ASTNode#getChildren()}.
+ *
+ * Per knoop worden een soort ({@link #kind(int)}) en één int opgeslagen: de waarde van een
+ * pixel-, percentage-, scalar- of boolliteral, of het id van een tekst (kleur, selector,
+ * property- of variabelenaam) in de stringtabel. Elke tekst staat maar één keer in die tabel.
+ * Fouten worden alleen bijgehouden voor knopen die er een hebben.
+ *
+ * Een FlatAST wordt opgebouwd met {@link #begin(byte, int)} en {@link #end()}, of omgezet vanuit
+ * een gewone AST met {@link #fromAST(AST)}. {@link #toAST()} zet hem terug, bijvoorbeeld voor de GUI.
+ */
+public class FlatAST {
+
+	//========================
+	// NODE KINDS
+	//========================
+	public static final byte STYLESHEET = 0;
+	public static final byte STYLERULE = 1;
+	public static final byte DECLARATION = 2;
+	public static final byte PROPERTY_NAME = 3;
+	public static final byte VARIABLE_ASSIGNMENT = 4;
+	public static final byte VARIABLE_REFERENCE = 5;
+	public static final byte IF_CLAUSE = 6;
+	public static final byte ELSE_CLAUSE = 7;
+	public static final byte CLASS_SELECTOR = 8;
+	public static final byte ID_SELECTOR = 9;
+	public static final byte TAG_SELECTOR = 10;
+	public static final byte ADD_OPERATION = 11;
+	public static final byte SUBTRACT_OPERATION = 12;
+	public static final byte MULTIPLY_OPERATION = 13;
+	public static final byte BOOL_LITERAL = 14;
+	public static final byte COLOR_LITERAL = 15;
+	public static final byte PERCENTAGE_LITERAL = 16;
+	public static final byte PIXEL_LITERAL = 17;
+	public static final byte SCALAR_LITERAL = 18;
+
+	//========================
+	// ATTRIBUTES
+	//========================
+	private byte[] kinds;
+	private int[] values; // Literalwaarde of string id
+	private int[] ends; // Positie na de subboom
+	private int[] childCounts;
+	private int size = 0;
+
+	private String[] strings = new String[16];
+	private final HashMap<String, Integer> stringIds = new HashMap<>();
+	private int stringCount = 0;
+
+	private String[] errors = null; // Wordt pas aangemaakt bij de eerste fout
+
+	private int[] open = new int[16]; // Knopen waarvan end() nog niet aangeroepen is
+	private int depth = 0;
+
+	public FlatAST() {
+		this(16);
+	}
+
+	public FlatAST(int capacity) {
+		capacity = Math.max(capacity, 1);
+		kinds = new byte[capacity];
+		values = new int[capacity];
+		ends = new int[capacity];
+		childCounts = new int[capacity];
+	}
+
+	//========================
+	// BUILDING
+	//========================
+
+	/**
+	 * Voegt een knoop toe als volgend kind van de knoop die nu open is. De kinderen van de nieuwe
+	 * knoop volgen tot de bijbehorende {@link #end()}.
+	 * @param kind soort knoop, een van de constanten in deze class
+	 * @param value literalwaarde of string id, zie {@link #intern(String)}
+	 * @return de nieuwe knoop
+	 */
+	public int begin(byte kind, int value) {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			values = Arrays.copyOf(values, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			childCounts = Arrays.copyOf(childCounts, capacity);
+			if (errors != null) errors = Arrays.copyOf(errors, capacity);
+		}
+		if (depth > 0) {
+			childCounts[open[depth - 1]]++;
+		} else if (size > 0) {
+			throw new IllegalStateException("Er kan maar één root zijn");
+		}
+		if (depth == open.length) {
+			open = Arrays.copyOf(open, depth * 2);
+		}
+		int node = size++;
+		kinds[node] = kind;
+		values[node] = value;
+		childCounts[node] = 0;
+		open[depth++] = node;
+		return node;
+	}
+
+	/**
+	 * Sluit de laatst begonnen knoop af.
+	 */
+	public void end() {
+		if (depth == 0) {
+			throw new IllegalStateException("Er is geen open knoop");
+		}
+		ends[open[--depth]] = size;
+	}
+
+	/**
+	 * Voegt een knoop zonder kinderen toe.
+	 * @return de nieuwe knoop
+	 */
+	public int leaf(byte kind, int value) {
+		int node = begin(kind, value);
+		end();
+		return node;
+	}
+
+	/**
+	 * Voegt een knoop zonder kinderen uit een andere FlatAST toe, bijvoorbeeld een literal of selector.
+	 * @return de nieuwe knoop
+	 */
+	public int copyLeaf(FlatAST source, int node) {
+		byte kind = source.kind(node);
+		return leaf(kind, hasText(kind) ? intern(source.text(node)) : source.intValue(node));
+	}
+
+	/**
+	 * @param text een tekst
+	 * @return het id van de tekst in de stringtabel, gelijke teksten krijgen hetzelfde id
+	 */
+	public int intern(String text) {
+		Integer id = stringIds.get(text);
+		if (id != null) {
+			return id;
+		}
+		if (stringCount == strings.length) {
+			strings = Arrays.copyOf(strings, stringCount * 2);
+		}
+		strings[stringCount] = text;
+		stringIds.put(text, stringCount);
+		return stringCount++;
+	}
+
+	//========================
+	// VIEW
+	//========================
+	public int size() {
+		return size;
+	}
+
+	public int root() {
+		return 0;
+	}
+
+	public byte kind(int node) {
+		return kinds[node];
+	}
+
+	/**
+	 * @return de waarde van een pixel-, percentage- of scalarliteral, of 1/0 voor een boolliteral
+	 */
+	public int intValue(int node) {
+		return values[node];
+	}
+
+	public boolean boolValue(int node) {
+		return values[node] != 0;
+	}
+
+	/**
+	 * @return de tekst van een kleur, selector, property- of variabelenaam
+	 */
+	public String text(int node) {
+		return strings[values[node]];
+	}
+
+	/**
+	 * @return het string id van de tekst van de knoop, gelijk voor gelijke teksten
+	 */
+	public int textId(int node) {
+		return values[node];
+	}
+
+	/**
+	 * @param node een VariableReference knoop
+	 * @return het id van de variabele: het string id van zijn naam. Die ids horen bij deze AST en
+	 * lopen van 0 tot {@link #stringCount()}, dus een SymbolTable kan ze direct gebruiken.
+	 */
+	public int variableId(int node) {
+		return values[node];
+	}
+
+	public String string(int id) {
+		return strings[id];
+	}
+
+	/**
+	 * @return aantal teksten in de stringtabel, met ids 0 tot stringCount
+	 */
+	public int stringCount() {
+		return stringCount;
+	}
+
+	public int childCount(int node) {
+		return childCounts[node];
+	}
+
+	/**
+	 * @return het eerste kind; alleen geldig als {@link #childCount(int)} groter dan 0 is
+	 */
+	public int firstChild(int node) {
+		return node + 1;
+	}
+
+	/**
+	 * @return de positie na de subboom van de knoop; voor een kind is dat zijn volgende broer
+	 */
+	public int end(int node) {
+		return ends[node];
+	}
+
+	/**
+	 * @return het kind op positie index, in O(index)
+	 */
+	public int child(int node, int index) {
+		if (index < 0 || index >= childCounts[node]) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + childCounts[node]);
+		}
+		int child = node + 1;
+		for (int i = 0; i < index; i++) {
+			child = ends[child];
+		}
+		return child;
+	}
+
+	/**
+	 * @param statement een Declaration, VariableAssignment of IfClause
+	 * @return de waarde van de declaratie of toekenning of de conditie van de if, of -1 als die ontbreekt
+	 */
+	public int expression(int statement) {
+		int index = kinds[statement] == IF_CLAUSE ? 0 : 1;
+		return childCounts[statement] > index ? child(statement, index) : -1;
+	}
+
+	/**
+	 * @param ifClause een IfClause
+	 * @return de ElseClause, of {@link #end(int)} als er geen else is. De body staat tussen de
+	 * conditie en deze positie.
+	 */
+	public int elseClause(int ifClause) {
+		// De ElseClause is altijd het laatste kind
+		int child = firstChild(ifClause);
+		while (child < ends[ifClause] && kinds[child] != ELSE_CLAUSE) {
+			child = ends[child];
+		}
+		return child;
+	}
+
+	/**
+	 * @return de eerste knoop na de selectors van een Stylerule, het begin van de body
+	 */
+	public int ruleBody(int stylerule) {
+		int child = firstChild(stylerule);
+		while (child < ends[stylerule] && isSelector(kinds[child])) {
+			child = ends[child];
+		}
+		return child;
+	}
+
+	public static boolean isLiteral(byte kind) {
+		return kind >= BOOL_LITERAL;
+	}
+
+	public static boolean isSelector(byte kind) {
+		return kind == CLASS_SELECTOR || kind == ID_SELECTOR || kind == TAG_SELECTOR;
+	}
+
+	/**
+	 * @return true als de waarde van deze soort knoop een string id is
+	 */
+	public static boolean hasText(byte kind) {
+		return kind == PROPERTY_NAME || kind == VARIABLE_REFERENCE || kind == COLOR_LITERAL || isSelector(kind);
+	}
+
+	public static boolean isOperation(byte kind) {
+		return kind == ADD_OPERATION || kind == SUBTRACT_OPERATION || kind == MULTIPLY_OPERATION;
+	}
+
+	/**
+	 * @param kind soort van een operatie, zie {@link #isOperation(byte)}
+	 * @return de operator van die soort operatie
+	 */
+	public static Operator operator(byte kind) {
+		switch (kind) {
+			case ADD_OPERATION: return Operator.ADD;
+			case SUBTRACT_OPERATION: return Operator.SUBTRACT;
+			case MULTIPLY_OPERATION: return Operator.MULTIPLY;
+			default: throw new IllegalArgumentException("Geen operatie: " + kind);
+		}
+	}
+
+	//========================
+	// ERRORS
+	//========================
+	public void setError(int node, String description) {
+		if (errors == null) {
+			errors = new String[kinds.length];
+		}
+		errors[node] = description;
+	}
+
+	public String getError(int node) {
+		return errors == null ? null : errors[node];
+	}
+
+	public boolean hasErrors() {
+		if (errors != null) {
+			for (int node = 0; node < size; node++) {
+				if (errors[node] != null) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return alle fouten in dezelfde volgorde als {@link AST#getErrors()}
+	 */
+	public ArrayList<SemanticError> getErrors() {
+		ArrayList<SemanticError> result = new ArrayList<>();
+		if (errors != null) {
+			// Pre-order is dezelfde volgorde als de recursieve collectErrors
+			for (int node = 0; node < size; node++) {
+				if (errors[node] != null) result.add(new SemanticError(errors[node]));
+			}
+		}
+		return result;
+	}
+
+	public void clearErrors() {
+		errors = null;
+	}
+
+	//========================
+	// CONVERSION
+	//========================
+
+	/**
+	 * Zet een gewone AST om, inclusief de fouten op de knopen.
+	 * @param ast de om te zetten AST
+	 * @return nieuwe FlatAST met dezelfde knopen in dezelfde volgorde
+	 */
+	public static FlatAST fromAST(AST ast) {
+		FlatAST flat = new FlatAST();
+		flatten(ast.root, flat);
+		return flat;
+	}
+
+	private static void flatten(ASTNode root, FlatAST flat) {
+		new Traversal().walk(root, new Traversal.Walker() {
+			@Override
+			public boolean enter(ASTNode node) {
+				int index = node.accept(KIND_AND_VALUE, flat);
+				if (node.hasError()) {
+					flat.setError(index, node.getError().description);
+				}
+				return true;
+			}
+
+			@Override
+			public void exit(ASTNode node) {
+				flat.end();
+			}
+		});
+	}
+
+	/**
+	 * Voegt een objectknoop met zijn hele subboom toe als volgend kind van de open knoop.
+	 * @param node de toe te voegen knoop, bijvoorbeeld een uitgerekende Literal
+	 * @return de nieuwe platte knoop
+	 */
+	public int append(ASTNode node) {
+		int index = size;
+		flatten(node, this);
+		return index;
+	}
+
+	/**
+	 * @param node een literalknoop
+	 * @return de literal als gedeelde instantie, bijvoorbeeld om mee te rekenen
+	 */
+	public Literal toLiteral(int node) {
+		if (!isLiteral(kinds[node])) {
+			throw new IllegalArgumentException("Knoop " + node + " is geen literal");
+		}
+		// Gedeelde instanties, net als de literals die de Evaluator uitrekent
+		switch (kinds[node]) {
+			case BOOL_LITERAL: return BoolLiteral.valueOf(boolValue(node));
+			case COLOR_LITERAL: return ColorLiteral.valueOf(text(node));
+			case PERCENTAGE_LITERAL: return PercentageLiteral.valueOf(intValue(node));
+			case PIXEL_LITERAL: return PixelLiteral.valueOf(intValue(node));
+			default: return ScalarLiteral.valueOf(intValue(node));
+		}
+	}
+
+	/**
+	 * Zet deze FlatAST om naar een gewone AST, inclusief de fouten op de knopen.
+	 * @return nieuwe AST
+	 */
+	public AST toAST() {
+		if (size == 0) {
+			return new AST();
+		}
+		return new AST((Stylesheet) toNode(root()));
+	}
+
+	private ASTNode toNode(int root) {
+		// De knopen waarvan de kinderen nu toegevoegd worden, de binnenste bovenaan
+		ArrayDeque<ASTNode> parents = new ArrayDeque<>();
+		ASTNode[] result = new ASTNode[1];
+		new Traversal().walk(this, root, new Traversal.FlatWalker() {
+			@Override
+			public boolean enter(FlatAST flat, int node) {
+				ASTNode created = createNode(node);
+				String error = getError(node);
+				if (error != null) {
+					created.setError(error);
+				}
+				if (parents.isEmpty()) {
+					result[0] = created;
+				} else {
+					parents.peek().addChild(created);
+				}
+				parents.push(created);
+				return true;
+			}
+
+			@Override
+			public void exit(FlatAST flat, int node) {
+				parents.pop();
+			}
+		});
+		return result[0];
+	}
+
+	private ASTNode createNode(int node) {
+		switch (kinds[node]) {
+			case STYLESHEET: return new Stylesheet();
+			case STYLERULE: return new Stylerule();
+			case DECLARATION: return new Declaration();
+			case PROPERTY_NAME: return new PropertyName(text(node));
+			case VARIABLE_ASSIGNMENT: return new VariableAssignment();
+			case VARIABLE_REFERENCE: return new VariableReference(text(node));
+			case IF_CLAUSE: return new IfClause();
+			case ELSE_CLAUSE: return new ElseClause();
+			case CLASS_SELECTOR: return new ClassSelector(text(node));
+			case ID_SELECTOR: return new IdSelector(text(node));
+			case TAG_SELECTOR: return new TagSelector(text(node));
+			case ADD_OPERATION: return new AddOperation();
+			case SUBTRACT_OPERATION: return new SubtractOperation();
+			case MULTIPLY_OPERATION: return new MultiplyOperation();
+			case BOOL_LITERAL: return new BoolLiteral(boolValue(node));
+			case COLOR_LITERAL: return new ColorLiteral(text(node));
+			case PERCENTAGE_LITERAL: return new PercentageLiteral(intValue(node));
+			case PIXEL_LITERAL: return new PixelLiteral(intValue(node));
+			case SCALAR_LITERAL: return new ScalarLiteral(intValue(node));
+			default: throw new IllegalStateException("Onbekende knoopsoort " + kinds[node]);
+		}
+	}
+
+	// Begint voor elke objectknoop de bijbehorende platte knoop
+	private static final ASTVisitor<Integer, FlatAST> KIND_AND_VALUE = new ASTVisitor<>() {
+		@Override
+		public Integer visitStylesheet(Stylesheet node, FlatAST flat) {
+			return flat.begin(STYLESHEET, 0);
+		}
+
+		@Override
+		public Integer visitStylerule(Stylerule node, FlatAST flat) {
+			return flat.begin(STYLERULE, 0);
+		}
+
+		@Override
+		public Integer visitDeclaration(Declaration node, FlatAST flat) {
+			return flat.begin(DECLARATION, 0);
+		}
+
+		@Override
+		public Integer visitPropertyName(PropertyName node, FlatAST flat) {
+			return flat.begin(PROPERTY_NAME, flat.intern(node.name));
+		}
+
+		@Override
+		public Integer visitVariableAssignment(VariableAssignment node, FlatAST flat) {
+			return flat.begin(VARIABLE_ASSIGNMENT, 0);
+		}
+
+		@Override
+		public Integer visitVariableReference(VariableReference node, FlatAST flat) {
+			return flat.begin(VARIABLE_REFERENCE, flat.intern(node.name));
+		}
+
+		@Override
+		public Integer visitIfClause(IfClause node, FlatAST flat) {
+			return flat.begin(IF_CLAUSE, 0);
+		}
+
+		@Override
+		public Integer visitElseClause(ElseClause node, FlatAST flat) {
+			return flat.begin(ELSE_CLAUSE, 0);
+		}
+
+		@Override
+		public Integer visitClassSelector(ClassSelector node, FlatAST flat) {
+			return flat.begin(CLASS_SELECTOR, flat.intern(node.cls));
+		}
+
+		@Override
+		public Integer visitIdSelector(IdSelector node, FlatAST flat) {
+			return flat.begin(ID_SELECTOR, flat.intern(node.id));
+		}
+
+		@Override
+		public Integer visitTagSelector(TagSelector node, FlatAST flat) {
+			return flat.begin(TAG_SELECTOR, flat.intern(node.tag));
+		}
+
+		@Override
+		public Integer visitAddOperation(AddOperation node, FlatAST flat) {
+			return flat.begin(ADD_OPERATION, 0);
+		}
+
+		@Override
+		public Integer visitSubtractOperation(SubtractOperation node, FlatAST flat) {
+			return flat.begin(SUBTRACT_OPERATION, 0);
+		}
+
+		@Override
+		public Integer visitMultiplyOperation(MultiplyOperation node, FlatAST flat) {
+			return flat.begin(MULTIPLY_OPERATION, 0);
+		}
+
+		@Override
+		public Integer visitBoolLiteral(BoolLiteral node, FlatAST flat) {
+			return flat.begin(BOOL_LITERAL, node.value ? 1 : 0);
+		}
+
+		@Override
+		public Integer visitColorLiteral(ColorLiteral node, FlatAST flat) {
+			return flat.begin(COLOR_LITERAL, flat.intern(node.value));
+		}
+
+		@Override
+		public Integer visitPercentageLiteral(PercentageLiteral node, FlatAST flat) {
+			return flat.begin(PERCENTAGE_LITERAL, node.value);
+		}
+
+		@Override
+		public Integer visitPixelLiteral(PixelLiteral node, FlatAST flat) {
+			return flat.begin(PIXEL_LITERAL, node.value);
+		}
+
+		@Override
+		public Integer visitScalarLiteral(ScalarLiteral node, FlatAST flat) {
+			return flat.begin(SCALAR_LITERAL, node.value);
+		}
+	};
+}
@@ -1,4 +1,23 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+/**
+ * Een waarde in een expressie. De waarde van een literal verandert niet.
+ *
+ * Met de valueOf methodes van de subclasses worden veelvoorkomende waarden gedeeld: kleine
+ * getallen, TRUE en FALSE en eerder gebruikte kleuren. Gelijke gedeelde literals zijn dan ook
+ * dezelfde instantie. Een gedeelde literal kan op meerdere plekken in de AST staan; zet er
+ * dus geen fout op. De parser maakt daarom altijd nieuwe literals.
+ */
 public abstract class Literal extends Expression {
+
+	// Getallen in dit bereik worden door PixelLiteral, PercentageLiteral en ScalarLiteral gedeeld
+	protected static final int CACHE_LOW = -128;
+	protected static final int CACHE_HIGH = 1024;
+
+	/**
+	 * @return het type van deze waarde
+	 */
+	public abstract ExpressionType getType();
 }
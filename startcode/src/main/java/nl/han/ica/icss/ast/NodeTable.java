@@ -0,0 +1,303 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Hash-consing van expressies en declaraties: elke structuur wordt maar één keer opgeslagen.
+ *
+ * {@link #intern(Expression)} bouwt een subboom van onder naar boven na. Voor elke knoop wordt
+ * eerst gekeken of de tabel al een knoop met dezelfde soort, waarde en (gedeelde) kinderen heeft;
+ * zo ja, dan wordt die teruggegeven. Omdat de kinderen al gedeeld zijn, kost dat vergelijken maar
+ * één stap per kind. Elke gedeelde knoop onthoudt zijn hashCode, dus hashCode en equals zijn
+ * daarna O(1): twee knopen uit dezelfde tabel zijn alleen gelijk als het dezelfde instantie is.
+ *
+ * Gedeelde knopen staan op meerdere plekken in de AST en mogen dus niet meer veranderd worden,
+ * ook niet door een transformatie. Fouten op de oorspronkelijke knopen worden niet meegenomen.
+ * De Checker zet fouten op de knopen en weigert daarom een AST met gedeelde knopen: controleer
+ * eerst en intern daarna, voor de Evaluator, de Generator of {@link BinaryAST}.
+ */
+public class NodeTable {
+
+	private final HashMap<ASTNode, ASTNode> nodes = new HashMap<>();
+
+	/**
+	 * @param expression een expressie, mag null zijn
+	 * @return de gedeelde expressie met dezelfde structuur
+	 */
+	public Expression intern(Expression expression) {
+		return (Expression) internNode(expression);
+	}
+
+	/**
+	 * @param declaration een declaratie, mag null zijn
+	 * @return de gedeelde declaratie met dezelfde property en expressie
+	 */
+	public Declaration intern(Declaration declaration) {
+		return (Declaration) internNode(declaration);
+	}
+
+	/**
+	 * Vervangt alle declaraties en expressies in de AST door gedeelde knopen uit deze tabel.
+	 * @param ast de AST, wordt aangepast
+	 */
+	public void internAll(AST ast) {
+		if (ast.root != null) {
+			ast.root.accept(internStatement, null);
+		}
+	}
+
+	/**
+	 * @return aantal verschillende gedeelde knopen
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	private void internBody(ArrayList<ASTNode> body) {
+		body.replaceAll(statement -> statement.accept(internStatement, null));
+	}
+
+	private ASTNode internNode(ASTNode node) {
+		if (node == null || node.table == this) {
+			return node;
+		}
+		// Nieuwe knoop met gedeelde kinderen, zodat equals en hashCode niet de hele subboom doorlopen
+		ASTNode candidate = node.accept(EMPTY_COPY, null);
+		for (int i = 0, count = node.getChildCount(); i < count; i++) {
+			candidate.addChild(internNode(node.getChild(i)));
+		}
+		ASTNode existing = nodes.get(candidate);
+		if (existing != null) {
+			return existing;
+		}
+		candidate.structuralHash = candidate.hashCode();
+		candidate.table = this;
+		nodes.put(candidate, candidate);
+		return candidate;
+	}
+
+	// Interneert de declaraties en expressies in een statement en geeft terug wat er in de body
+	// komt te staan: de gedeelde declaratie, of het statement zelf
+	private final ASTVisitor<ASTNode, Void> internStatement = new ASTVisitor<>() {
+		@Override
+		public ASTNode visitStylesheet(Stylesheet node, Void context) {
+			internBody(node.body);
+			return node;
+		}
+
+		@Override
+		public ASTNode visitStylerule(Stylerule node, Void context) {
+			internBody(node.body);
+			return node;
+		}
+
+		@Override
+		public ASTNode visitDeclaration(Declaration node, Void context) {
+			return intern(node);
+		}
+
+		@Override
+		public ASTNode visitVariableAssignment(VariableAssignment node, Void context) {
+			node.expression = intern(node.expression);
+			return node;
+		}
+
+		@Override
+		public ASTNode visitIfClause(IfClause node, Void context) {
+			node.conditionalExpression = intern(node.conditionalExpression);
+			internBody(node.body);
+			if (node.elseClause != null) {
+				node.elseClause.accept(this, null);
+			}
+			return node;
+		}
+
+		@Override
+		public ASTNode visitElseClause(ElseClause node, Void context) {
+			internBody(node.body);
+			return node;
+		}
+
+		// Alleen statements staan in een body
+		@Override
+		public ASTNode visitPropertyName(PropertyName node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitVariableReference(VariableReference node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitClassSelector(ClassSelector node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitIdSelector(IdSelector node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitTagSelector(TagSelector node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitAddOperation(AddOperation node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitSubtractOperation(SubtractOperation node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitMultiplyOperation(MultiplyOperation node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitBoolLiteral(BoolLiteral node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitColorLiteral(ColorLiteral node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitPercentageLiteral(PercentageLiteral node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitPixelLiteral(PixelLiteral node, Void context) {
+			throw notAStatement(node);
+		}
+
+		@Override
+		public ASTNode visitScalarLiteral(ScalarLiteral node, Void context) {
+			throw notAStatement(node);
+		}
+
+		private IllegalArgumentException notAStatement(ASTNode node) {
+			return new IllegalArgumentException(node.getNodeLabel() + " is geen statement");
+		}
+	};
+
+	// Maakt een knoop van dezelfde soort en met dezelfde waarde, maar zonder kinderen
+	private static final ASTVisitor<ASTNode, Void> EMPTY_COPY = new ASTVisitor<>() {
+		@Override
+		public ASTNode visitDeclaration(Declaration node, Void context) {
+			return new Declaration();
+		}
+
+		@Override
+		public ASTNode visitPropertyName(PropertyName node, Void context) {
+			return new PropertyName(node.name);
+		}
+
+		@Override
+		public ASTNode visitVariableReference(VariableReference node, Void context) {
+			return new VariableReference(node.name, node.ids);
+		}
+
+		@Override
+		public ASTNode visitAddOperation(AddOperation node, Void context) {
+			return new AddOperation();
+		}
+
+		@Override
+		public ASTNode visitSubtractOperation(SubtractOperation node, Void context) {
+			return new SubtractOperation();
+		}
+
+		@Override
+		public ASTNode visitMultiplyOperation(MultiplyOperation node, Void context) {
+			return new MultiplyOperation();
+		}
+
+		@Override
+		public ASTNode visitBoolLiteral(BoolLiteral node, Void context) {
+			return new BoolLiteral(node.value);
+		}
+
+		@Override
+		public ASTNode visitColorLiteral(ColorLiteral node, Void context) {
+			return new ColorLiteral(node.value);
+		}
+
+		@Override
+		public ASTNode visitPercentageLiteral(PercentageLiteral node, Void context) {
+			return new PercentageLiteral(node.value);
+		}
+
+		@Override
+		public ASTNode visitPixelLiteral(PixelLiteral node, Void context) {
+			return new PixelLiteral(node.value);
+		}
+
+		@Override
+		public ASTNode visitScalarLiteral(ScalarLiteral node, Void context) {
+			return new ScalarLiteral(node.value);
+		}
+
+		// Alleen expressies en declaraties worden gedeeld
+		@Override
+		public ASTNode visitStylesheet(Stylesheet node, Void context) {
+			throw notShared(node);
+		}
+
+		@Override
+		public ASTNode visitStylerule(Stylerule node, Void context) {
+			throw notShared(node);
+		}
+
+		@Override
+		public ASTNode visitVariableAssignment(VariableAssignment node, Void context) {
+			throw notShared(node);
+		}
+
+		@Override
+		public ASTNode visitIfClause(IfClause node, Void context) {
+			throw notShared(node);
+		}
+
+		@Override
+		public ASTNode visitElseClause(ElseClause node, Void context) {
+			throw notShared(node);
+		}
+
+		@Override
+		public ASTNode visitClassSelector(ClassSelector node, Void context) {
+			throw notShared(node);
+		}
+
+		@Override
+		public ASTNode visitIdSelector(IdSelector node, Void context) {
+			throw notShared(node);
+		}
+
+		@Override
+		public ASTNode visitTagSelector(TagSelector node, Void context) {
+			throw notShared(node);
+		}
+
+		private IllegalArgumentException notShared(ASTNode node) {
+			return new IllegalArgumentException(node.getNodeLabel() + " kan niet gedeeld worden");
+		}
+	};
+}
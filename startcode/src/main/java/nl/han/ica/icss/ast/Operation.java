@@ -1,12 +1,20 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.icss.ast.types.Operator;
+
 import java.util.ArrayList;
+import java.util.Objects;
 
 public abstract class Operation extends Expression {
 
     public Expression lhs;
     public Expression rhs;
 
+    /**
+     * @return de operator met de rekenregels van deze operatie
+     */
+    public abstract Operator getOperator();
+
     @Override
     public ArrayList<ASTNode> getChildren() {
         ArrayList<ASTNode> children = new ArrayList<>();
@@ -17,6 +25,16 @@ public abstract class Operation extends Expression {
         return children;
     }
 
+    @Override
+    public int getChildCount() {
+        return (lhs != null ? 1 : 0) + (rhs != null ? 1 : 0);
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        return childOfPair(lhs, rhs, index);
+    }
+
     @Override
     public ASTNode addChild(ASTNode child) {
         if(lhs == null) {
@@ -26,4 +44,20 @@ public abstract class Operation extends Expression {
         }
         return this;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        Operation that = (Operation) o;
+        return Objects.equals(lhs, that.lhs) &&
+                Objects.equals(rhs, that.rhs);
+    }
+
+    @Override
+    public int hashCode() {
+        if (isInterned()) return structuralHash;
+        return Objects.hash(getNodeLabel(), lhs, rhs);
+    }
 }
@@ -21,6 +21,12 @@ public class Stylerule extends ASTNode {
 	public String getNodeLabel() {
 		return "Stylerule";
 	}
+
+	@Override
+	public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+		return visitor.visitStylerule(this, context);
+	}
+
 	@Override
 	public ArrayList<ASTNode> getChildren() {
 		ArrayList<ASTNode> children = new ArrayList<>();
@@ -30,6 +36,17 @@ public class Stylerule extends ASTNode {
 		return children;
 	}
 
+	@Override
+	public int getChildCount() {
+		return selectors.size() + body.size();
+	}
+	@Override
+	public ASTNode getChild(int index) {
+		// Eerst de selectors, dan de body, net als getChildren()
+		int selectorCount = selectors.size();
+		return index < selectorCount ? selectors.get(index) : body.get(index - selectorCount);
+	}
+
     @Override
     public ASTNode addChild(ASTNode child) {
 		if(child instanceof Selector)
@@ -0,0 +1,524 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Doorloopt een AST zonder recursie, met een eigen stack op de heap. Een diep geneste stylesheet
+ * of een expressie met tienduizenden termen geeft zo geen StackOverflowError: de diepte wordt
+ * alleen door het geheugen begrensd.
+ *
+ * De stacks worden hergebruikt, dus één Traversal per pass is genoeg. Een walker of folder mag
+ * zelf weer {@link #walk} of {@link #fold} aanroepen op dezelfde Traversal; elke aanroep werkt
+ * alleen boven het deel van de stack dat er al lag. Een Traversal is niet thread-safe.
+ */
+public class Traversal {
+
+	/**
+	 * Bezoeker van de knopen van een boom, in dezelfde volgorde als een recursieve doorloop.
+	 */
+	public interface Walker {
+
+		/**
+		 * @param node de knoop
+		 * @return true om de kinderen te bezoeken en daarna {@link #exit(ASTNode)} aan te roepen
+		 */
+		boolean enter(ASTNode node);
+
+		/**
+		 * Wordt aangeroepen na de kinderen van een knoop waarvoor enter true gaf.
+		 * @param node de knoop
+		 */
+		default void exit(ASTNode node) {
+		}
+
+		/**
+		 * Wordt direct na een enter die true gaf aangeroepen.
+		 * @param node de knoop
+		 * @return de te bezoeken kinderen, of null voor alle kinderen ({@link ASTNode#getChild(int)})
+		 */
+		default List<? extends ASTNode> children(ASTNode node) {
+			return null;
+		}
+	}
+
+	/**
+	 * Rekent een expressie van onder naar boven uit: eerst de operanden, dan de operatie.
+	 * @param <T> resultaat per expressie, bijvoorbeeld een type of een waarde
+	 */
+	public interface Folder<T> {
+
+		/**
+		 * @param expression een expressie die nog niet bezocht is
+		 * @return een al bekend resultaat, waarmee de subboom overgeslagen wordt, of null
+		 */
+		default T known(Expression expression) {
+			return null;
+		}
+
+		/**
+		 * @param expression een expressie die geen operatie is
+		 * @param parent de operatie waar de expressie in staat, of null voor de wortel
+		 * @return het resultaat van de expressie
+		 */
+		T leaf(Expression expression, Operation parent);
+
+		/**
+		 * @param operation de operatie
+		 * @param lhs resultaat van de linkerkant
+		 * @param rhs resultaat van de rechterkant
+		 * @return het resultaat van de operatie
+		 */
+		T operation(Operation operation, T lhs, T rhs);
+
+		/**
+		 * @return het resultaat voor een ontbrekende expressie of operand
+		 */
+		T missing();
+	}
+
+	/**
+	 * Bezoeker van de knopen van een {@link FlatAST}, de platte tegenhanger van {@link Walker}.
+	 */
+	public interface FlatWalker {
+
+		/**
+		 * @param flat de AST
+		 * @param node de knoop
+		 * @return true om de kinderen te bezoeken en daarna {@link #exit(FlatAST, int)} aan te roepen
+		 */
+		boolean enter(FlatAST flat, int node);
+
+		/**
+		 * Wordt aangeroepen na de kinderen van een knoop waarvoor enter true gaf.
+		 */
+		default void exit(FlatAST flat, int node) {
+		}
+
+		/**
+		 * Wordt direct na een enter die true gaf aangeroepen, en daarna {@link #childrenEnd(FlatAST, int)}.
+		 * @return de positie van het eerste te bezoeken kind
+		 */
+		default int firstChild(FlatAST flat, int node) {
+			return flat.firstChild(node);
+		}
+
+		/**
+		 * @return de positie na het laatste te bezoeken kind
+		 */
+		default int childrenEnd(FlatAST flat, int node) {
+			return flat.end(node);
+		}
+	}
+
+	/**
+	 * Rekent een expressie in een {@link FlatAST} uit, de platte tegenhanger van {@link Folder}.
+	 * @param <T> resultaat per expressie
+	 */
+	public interface FlatFolder<T> {
+
+		/**
+		 * @param node een expressie die geen operatie is
+		 * @return het resultaat van de expressie
+		 */
+		T leaf(FlatAST flat, int node);
+
+		/**
+		 * @param node de operatie
+		 * @return het resultaat van de operatie
+		 */
+		T operation(FlatAST flat, int node, T lhs, T rhs);
+
+		/**
+		 * @return het resultaat voor een ontbrekende expressie of operand
+		 */
+		T missing();
+	}
+
+	/**
+	 * Walker die elke knoop met {@link ASTNode#accept} naar de methode voor zijn type stuurt, zonder
+	 * instanceof. Een statement wordt bezocht met {@link Phase#ENTER}, waarbij true de kinderen laat
+	 * bezoeken, en daarna met {@link Phase#EXIT}. De methoden voor statements zijn abstract, zodat een
+	 * pass elk soort statement moet afhandelen. Selectors, property names en expressies bevatten geen
+	 * statements en worden overgeslagen.
+	 */
+	public abstract static class VisitingWalker implements Walker, ASTVisitor<Boolean, VisitingWalker.Phase> {
+
+		public enum Phase { ENTER, EXIT }
+
+		private List<? extends ASTNode> children; // Gekozen bij de ENTER die net bezocht is, of null
+
+		/**
+		 * Alleen aan te roepen bij {@link Phase#ENTER}.
+		 * @param children de te bezoeken kinderen in plaats van alle kinderen
+		 */
+		protected final void visitChildren(List<? extends ASTNode> children) {
+			this.children = children;
+		}
+
+		@Override
+		public final boolean enter(ASTNode node) {
+			children = null;
+			return node.accept(this, Phase.ENTER);
+		}
+
+		@Override
+		public final void exit(ASTNode node) {
+			node.accept(this, Phase.EXIT);
+		}
+
+		@Override
+		public final List<? extends ASTNode> children(ASTNode node) {
+			List<? extends ASTNode> chosen = children;
+			children = null;
+			return chosen;
+		}
+
+		@Override
+		public Boolean visitPropertyName(PropertyName node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitVariableReference(VariableReference node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitClassSelector(ClassSelector node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitIdSelector(IdSelector node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitTagSelector(TagSelector node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitAddOperation(AddOperation node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitSubtractOperation(SubtractOperation node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitMultiplyOperation(MultiplyOperation node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitBoolLiteral(BoolLiteral node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitColorLiteral(ColorLiteral node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitPercentageLiteral(PercentageLiteral node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitPixelLiteral(PixelLiteral node, Phase phase) {
+			return false;
+		}
+
+		@Override
+		public Boolean visitScalarLiteral(ScalarLiteral node, Phase phase) {
+			return false;
+		}
+	}
+
+	//========================
+	// ATTRIBUTES
+	//========================
+
+	// Stack van walk: per knoop de kinderen en hoever die al bezocht zijn
+	private ASTNode[] nodes = new ASTNode[16];
+	private List<?>[] childLists = new List<?>[16]; // null: kinderen via getChild
+	private int[] positions = new int[16];
+	private int[] counts = new int[16];
+	private int nodeCount = 0;
+
+	// Stack van fold: expressies die nog bezocht moeten worden, en de uitgerekende resultaten
+	private Expression[] pending = new Expression[16];
+	private Operation[] pendingParents = new Operation[16];
+	private boolean[] operandsDone = new boolean[16]; // true: de operanden staan al op de valuestack
+	private int pendingCount = 0;
+	private Object[] values = new Object[16];
+	private int valueCount = 0;
+
+	// Stack van de platte walk: per knoop het volgende kind en het einde van de kinderen
+	private int[] flatNodes = new int[16];
+	private int[] flatNext = new int[16];
+	private int[] flatEnds = new int[16];
+	private int flatCount = 0;
+
+	// Stack van de platte fold: operaties waarvan nog operanden ontbreken, en hoeveel
+	private int[] operations = new int[16];
+	private int[] remaining = new int[16];
+	private int operationCount = 0;
+
+	//========================
+	// WALK
+	//========================
+
+	/**
+	 * Bezoekt root en zijn nakomelingen in pre-order, met een exit na de kinderen.
+	 * @param root de wortel, wordt overgeslagen als hij null is
+	 * @param walker de bezoeker
+	 */
+	public void walk(ASTNode root, Walker walker) {
+		int base = nodeCount;
+		try {
+			enter(root, walker);
+			while (nodeCount > base) {
+				int top = nodeCount - 1;
+				if (positions[top] < counts[top]) {
+					int index = positions[top]++;
+					List<?> children = childLists[top];
+					enter(children != null ? (ASTNode) children.get(index) : nodes[top].getChild(index), walker);
+				} else {
+					ASTNode node = nodes[top];
+					nodes[top] = null;
+					childLists[top] = null;
+					nodeCount--;
+					walker.exit(node);
+				}
+			}
+		} finally {
+			Arrays.fill(nodes, base, nodeCount, null);
+			Arrays.fill(childLists, base, nodeCount, null);
+			nodeCount = base;
+		}
+	}
+
+	private void enter(ASTNode node, Walker walker) {
+		if (node == null || !walker.enter(node)) {
+			return;
+		}
+		List<? extends ASTNode> children = walker.children(node);
+		if (nodeCount == nodes.length) {
+			int capacity = nodeCount * 2;
+			nodes = Arrays.copyOf(nodes, capacity);
+			childLists = Arrays.copyOf(childLists, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+		}
+		nodes[nodeCount] = node;
+		childLists[nodeCount] = children;
+		positions[nodeCount] = 0;
+		counts[nodeCount] = children != null ? children.size() : node.getChildCount();
+		nodeCount++;
+	}
+
+	//========================
+	// FOLD
+	//========================
+
+	/**
+	 * Rekent een expressie uit in post-order, de linkerkant voor de rechterkant.
+	 * @param root de expressie
+	 * @param folder rekent de bladeren en operaties uit
+	 * @param <T> resultaat per expressie
+	 * @return het resultaat van root, of {@link Folder#missing()} als root null is
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T fold(Expression root, Folder<T> folder) {
+		if (root == null) {
+			return folder.missing();
+		}
+		int pendingBase = pendingCount;
+		int valueBase = valueCount;
+		try {
+			push(root, null, false);
+			while (pendingCount > pendingBase) {
+				int top = --pendingCount;
+				Expression expression = pending[top];
+				Operation parent = pendingParents[top];
+				boolean done = operandsDone[top];
+				pending[top] = null;
+				pendingParents[top] = null;
+
+				if (done) {
+					Operation operation = (Operation) expression;
+					T rhs = operation.rhs != null ? (T) popValue() : folder.missing();
+					T lhs = operation.lhs != null ? (T) popValue() : folder.missing();
+					pushValue(folder.operation(operation, lhs, rhs));
+					continue;
+				}
+				T known = folder.known(expression);
+				if (known != null) {
+					pushValue(known);
+				} else if (expression instanceof Operation) {
+					// Eerst de operanden; de linkerkant komt als laatste op de stack en dus als eerste aan de beurt
+					Operation operation = (Operation) expression;
+					push(operation, parent, true);
+					if (operation.rhs != null) {
+						push(operation.rhs, operation, false);
+					}
+					if (operation.lhs != null) {
+						push(operation.lhs, operation, false);
+					}
+				} else {
+					pushValue(folder.leaf(expression, parent));
+				}
+			}
+			return (T) popValue();
+		} finally {
+			Arrays.fill(pending, pendingBase, pendingCount, null);
+			Arrays.fill(pendingParents, pendingBase, pendingCount, null);
+			Arrays.fill(values, valueBase, valueCount, null);
+			pendingCount = pendingBase;
+			valueCount = valueBase;
+		}
+	}
+
+	private void push(Expression expression, Operation parent, boolean done) {
+		if (pendingCount == pending.length) {
+			int capacity = pendingCount * 2;
+			pending = Arrays.copyOf(pending, capacity);
+			pendingParents = Arrays.copyOf(pendingParents, capacity);
+			operandsDone = Arrays.copyOf(operandsDone, capacity);
+		}
+		pending[pendingCount] = expression;
+		pendingParents[pendingCount] = parent;
+		operandsDone[pendingCount] = done;
+		pendingCount++;
+	}
+
+	private void pushValue(Object value) {
+		if (valueCount == values.length) {
+			values = Arrays.copyOf(values, valueCount * 2);
+		}
+		values[valueCount++] = value;
+	}
+
+	private Object popValue() {
+		Object value = values[--valueCount];
+		values[valueCount] = null;
+		return value;
+	}
+
+	//========================
+	// FLAT
+	//========================
+
+	/**
+	 * Bezoekt root en zijn nakomelingen in een FlatAST in pre-order, met een exit na de kinderen.
+	 * @param flat de AST
+	 * @param root de wortel
+	 * @param walker de bezoeker
+	 */
+	public void walk(FlatAST flat, int root, FlatWalker walker) {
+		int base = flatCount;
+		try {
+			enter(flat, root, walker);
+			while (flatCount > base) {
+				int top = flatCount - 1;
+				int child = flatNext[top];
+				if (child < flatEnds[top]) {
+					flatNext[top] = flat.end(child);
+					enter(flat, child, walker);
+				} else {
+					flatCount--;
+					walker.exit(flat, flatNodes[top]);
+				}
+			}
+		} finally {
+			flatCount = base;
+		}
+	}
+
+	private void enter(FlatAST flat, int node, FlatWalker walker) {
+		if (!walker.enter(flat, node)) {
+			return;
+		}
+		if (flatCount == flatNodes.length) {
+			int capacity = flatCount * 2;
+			flatNodes = Arrays.copyOf(flatNodes, capacity);
+			flatNext = Arrays.copyOf(flatNext, capacity);
+			flatEnds = Arrays.copyOf(flatEnds, capacity);
+		}
+		flatNodes[flatCount] = node;
+		flatNext[flatCount] = walker.firstChild(flat, node);
+		flatEnds[flatCount] = walker.childrenEnd(flat, node);
+		flatCount++;
+	}
+
+	/**
+	 * Rekent een expressie in een FlatAST uit in post-order, de linkerkant voor de rechterkant.
+	 * Omdat de knopen in pre-order staan, is dat één keer van voor naar achter door de subboom.
+	 * @param flat de AST
+	 * @param root de expressie, of -1 als die ontbreekt
+	 * @param folder rekent de bladeren en operaties uit
+	 * @param <T> resultaat per expressie
+	 * @return het resultaat van root, of {@link FlatFolder#missing()} als root -1 is
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T fold(FlatAST flat, int root, FlatFolder<T> folder) {
+		if (root < 0) {
+			return folder.missing();
+		}
+		int operationBase = operationCount;
+		int valueBase = valueCount;
+		try {
+			int end = flat.end(root);
+			for (int node = root; node < end; ) {
+				int count = flat.childCount(node);
+				if (FlatAST.isOperation(flat.kind(node)) && count > 0) {
+					// De operanden volgen direct op de operatie
+					pushOperation(node, count);
+					node++;
+					continue;
+				}
+				T value = FlatAST.isOperation(flat.kind(node))
+						? folder.operation(flat, node, folder.missing(), folder.missing())
+						: folder.leaf(flat, node);
+				node = flat.end(node);
+				// Reken de operaties uit waarvan nu alle operanden bekend zijn
+				pushValue(value);
+				while (operationCount > operationBase && --remaining[operationCount - 1] == 0) {
+					int operation = operations[--operationCount];
+					T rhs = flat.childCount(operation) > 1 ? (T) popValue() : folder.missing();
+					T lhs = (T) popValue();
+					pushValue(folder.operation(flat, operation, lhs, rhs));
+				}
+			}
+			return (T) popValue();
+		} finally {
+			Arrays.fill(values, valueBase, valueCount, null);
+			operationCount = operationBase;
+			valueCount = valueBase;
+		}
+	}
+
+	private void pushOperation(int node, int operandCount) {
+		if (operationCount == operations.length) {
+			operations = Arrays.copyOf(operations, operationCount * 2);
+			remaining = Arrays.copyOf(remaining, operationCount * 2);
+		}
+		operations[operationCount] = node;
+		remaining[operationCount] = operandCount;
+		operationCount++;
+	}
+}
@@ -17,6 +17,11 @@ public class VariableAssignment extends ASTNode {
 		return "VariableAssignment (" + name.name + ")";
 	}
 
+	@Override
+	public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+		return visitor.visitVariableAssignment(this, context);
+	}
+
 	@Override
 	public ASTNode addChild(ASTNode child) {
 		if(name == null) {
@@ -38,6 +43,14 @@ public class VariableAssignment extends ASTNode {
 			children.add(expression);
 		return children;
 	}
+	@Override
+	public int getChildCount() {
+		return (name != null ? 1 : 0) + (expression != null ? 1 : 0);
+	}
+	@Override
+	public ASTNode getChild(int index) {
+		return childOfPair(name, expression, index);
+	}
 
 	@Override
 	public boolean equals(Object o) {
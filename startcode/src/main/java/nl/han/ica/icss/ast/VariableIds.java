@@ -0,0 +1,69 @@
+package nl.han.ica.icss.ast;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Geeft elke variabelenaam een klein nummer, zodat een symbol table met arrays kan werken in plaats
+ * van met strings. Een tabel hoort bij één parse of compilatie: de Pipeline maakt er een per
+ * stylesheet en geeft hem aan de parser, die elke VariableReference zo zijn id geeft. De ids lopen
+ * dus alleen op tot het aantal namen in die stylesheet, en de tabel verdwijnt met de AST.
+ *
+ * Een tabel mag door meerdere threads tegelijk gevuld worden, zoals bij het parsen in delen.
+ * Een naam die al een id heeft, wordt zonder lock opgezocht.
+ */
+public class VariableIds {
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * @param name variabelenaam
+	 * @return id van de naam, gelijk voor gelijke namen, van 0 tot {@link #size()}
+	 */
+	public int idOf(String name) {
+		Integer id = ids.get(name);
+		if (id != null) {
+			return id;
+		}
+		return ids.computeIfAbsent(name, key -> count.getAndIncrement());
+	}
+
+	/**
+	 * @param reference een variabele uit een AST
+	 * @return id van de naam in deze tabel; zonder opzoeken als de variabele met deze tabel gemaakt is
+	 */
+	public int idOf(VariableReference reference) {
+		return reference.ids == this ? reference.id : idOf(reference.name);
+	}
+
+	/**
+	 * @param name variabelenaam
+	 * @return id van de naam, of -1 als de naam nog geen id heeft
+	 */
+	public int find(String name) {
+		Integer id = ids.get(name);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * @return aantal namen dat een id gekregen heeft
+	 */
+	public int size() {
+		return count.get();
+	}
+
+	/**
+	 * Kiest de tabel voor een pass die de ids van een AST overneemt: de tabel waarmee de eerste
+	 * variabele gemaakt is, zodat de ids van de parser zonder opzoeken gebruikt kunnen worden.
+	 * @param current de tabel van de pass, of null als die nog geen heeft
+	 * @param reference een variabele die de pass tegenkomt
+	 * @return current, of als die null is de tabel van reference of een nieuwe tabel
+	 */
+	public static VariableIds adopt(VariableIds current, VariableReference reference) {
+		if (current != null) {
+			return current;
+		}
+		return reference.ids != null ? reference.ids : new VariableIds();
+	}
+}
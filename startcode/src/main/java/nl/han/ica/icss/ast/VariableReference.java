@@ -4,11 +4,25 @@ import java.util.Objects;
 
 public class VariableReference extends Expression {
 
-	public String name;
-	
+	public final String name;
+	// Id van de naam in ids, gelijk voor gelijke namen; -1 als er geen tabel is
+	public final int id;
+	// Tabel waar id uit komt, zie VariableIds.idOf(VariableReference)
+	public final VariableIds ids;
+
 	public VariableReference(String name) {
+		this(name, null);
+	}
+
+	/**
+	 * @param name variabelenaam
+	 * @param ids tabel van de parse waar de variabele bij hoort, of null
+	 */
+	public VariableReference(String name, VariableIds ids) {
 		super();
 		this.name = name;
+		this.ids = ids;
+		this.id = ids != null ? ids.idOf(name) : -1;
 	}
 
 	@Override
@@ -16,6 +30,11 @@ public class VariableReference extends Expression {
 		return "VariableReference (" + name + ")";
 	}
 
+	@Override
+	public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+		return visitor.visitVariableReference(this, context);
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -1,10 +1,15 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.types.ExpressionType;
 import java.util.Objects;
 
 public class BoolLiteral extends Literal {
-    public boolean value;
+    public final boolean value;
+
+    public static final BoolLiteral TRUE = new BoolLiteral(true);
+    public static final BoolLiteral FALSE = new BoolLiteral(false);
 
     public BoolLiteral(boolean value) {
         this.value = value;
@@ -12,12 +17,30 @@ public class BoolLiteral extends Literal {
     public BoolLiteral(String text) {
         this.value = text.equals("TRUE");
     }
+
+    /**
+     * @return de gedeelde instantie {@link #TRUE} of {@link #FALSE}
+     */
+    public static BoolLiteral valueOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    @Override
+    public ExpressionType getType() {
+        return ExpressionType.BOOL;
+    }
+
     @Override
     public String getNodeLabel() {
         String textValue = value ? "TRUE" : "FALSE";
         return "Bool Literal (" + textValue + ")";
     }
 
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitBoolLiteral(this, context);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,20 +1,53 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.types.ExpressionType;
 
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ColorLiteral extends Literal {
-    public String value;
+    public final String value;
+
+    // Gedeelde kleuren. Begrensd, zodat een stylesheet met heel veel verschillende kleuren
+    // het geheugen niet vol laat lopen; daarboven maakt valueOf gewoon nieuwe literals.
+    private static final int MAX_INTERNED = 4096;
+    private static final ConcurrentHashMap<String, ColorLiteral> INTERNED = new ConcurrentHashMap<>();
 
     public ColorLiteral(String value) {
         this.value = value;
     }
+
+    /**
+     * @param value kleur, bijvoorbeeld #ff0000
+     * @return de gedeelde instantie voor deze kleur
+     */
+    public static ColorLiteral valueOf(String value) {
+        ColorLiteral literal = INTERNED.get(value);
+        if (literal != null) {
+            return literal;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            return new ColorLiteral(value);
+        }
+        return INTERNED.computeIfAbsent(value, ColorLiteral::new);
+    }
+    @Override
+    public ExpressionType getType() {
+        return ExpressionType.COLOR;
+    }
+
     @Override
     public String getNodeLabel() {
         return "Color literal (" + value + ")";
     }
 
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitColorLiteral(this, context);
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -1,11 +1,21 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.types.ExpressionType;
 
 import java.util.Objects;
 
 public class PercentageLiteral extends Literal {
-    public int value;
+    public final int value;
+
+    private static final PercentageLiteral[] CACHE = new PercentageLiteral[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new PercentageLiteral(CACHE_LOW + i);
+        }
+    }
 
     public PercentageLiteral(int value) {
         this.value = value;
@@ -13,11 +23,32 @@ public class PercentageLiteral extends Literal {
     public PercentageLiteral(String text) {
         this.value = Integer.parseInt(text.substring(0, text.length() - 1));
     }
+
+    /**
+     * @return een gedeelde instantie voor kleine waarden, anders een nieuwe
+     */
+    public static PercentageLiteral valueOf(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new PercentageLiteral(value);
+    }
+
+    @Override
+    public ExpressionType getType() {
+        return ExpressionType.PERCENTAGE;
+    }
+
     @Override
     public String getNodeLabel() {
         return "Percentage literal (" + value + ")";
     }
 
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitPercentageLiteral(this, context);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
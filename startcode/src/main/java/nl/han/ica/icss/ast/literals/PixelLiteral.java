@@ -1,11 +1,21 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.types.ExpressionType;
 
 import java.util.Objects;
 
 public class PixelLiteral extends Literal {
-    public int value;
+    public final int value;
+
+    private static final PixelLiteral[] CACHE = new PixelLiteral[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new PixelLiteral(CACHE_LOW + i);
+        }
+    }
 
     public PixelLiteral(int value) {
         this.value = value;
@@ -13,11 +23,32 @@ public class PixelLiteral extends Literal {
     public PixelLiteral(String text) {
         this.value = Integer.parseInt(text.substring(0, text.length() - 2));
     }
+
+    /**
+     * @return een gedeelde instantie voor kleine waarden, anders een nieuwe
+     */
+    public static PixelLiteral valueOf(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new PixelLiteral(value);
+    }
+
+    @Override
+    public ExpressionType getType() {
+        return ExpressionType.PIXEL;
+    }
+
     @Override
     public String getNodeLabel() {
         return "Pixel literal (" + value + ")";
     }
 
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitPixelLiteral(this, context);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,11 +1,21 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.types.ExpressionType;
 
 import java.util.Objects;
 
 public class ScalarLiteral extends Literal {
-    public int value;
+    public final int value;
+
+    private static final ScalarLiteral[] CACHE = new ScalarLiteral[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new ScalarLiteral(CACHE_LOW + i);
+        }
+    }
 
     public ScalarLiteral(int value) {
         this.value = value;
@@ -13,11 +23,32 @@ public class ScalarLiteral extends Literal {
     public ScalarLiteral(String text) {
         this.value = Integer.parseInt(text);
     }
+
+    /**
+     * @return een gedeelde instantie voor kleine waarden, anders een nieuwe
+     */
+    public static ScalarLiteral valueOf(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new ScalarLiteral(value);
+    }
+
+    @Override
+    public ExpressionType getType() {
+        return ExpressionType.SCALAR;
+    }
+
     @Override
     public String getNodeLabel() {
         return "Scalar literal (" + value + ")";
     }
 
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitScalarLiteral(this, context);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,6 +1,8 @@
 package nl.han.ica.icss.ast.operations;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Operation;
+import nl.han.ica.icss.ast.types.Operator;
 
 public class AddOperation extends Operation {
 
@@ -8,4 +10,15 @@ public class AddOperation extends Operation {
     public String getNodeLabel() {
         return "Add";
     }
+
+    @Override
+    public Operator getOperator() {
+        return Operator.ADD;
+    }
+
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitAddOperation(this, context);
+    }
+
 }
@@ -1,6 +1,8 @@
 package nl.han.ica.icss.ast.operations;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Operation;
+import nl.han.ica.icss.ast.types.Operator;
 
 public class SubtractOperation extends Operation {
 
@@ -8,4 +10,15 @@ public class SubtractOperation extends Operation {
     public String getNodeLabel() {
         return "Subtract";
     }
+
+    @Override
+    public Operator getOperator() {
+        return Operator.SUBTRACT;
+    }
+
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitSubtractOperation(this, context);
+    }
+
 }
@@ -0,0 +1,108 @@
+package nl.han.ica.icss.ast.types;
+
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.literals.PercentageLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+
+import java.util.Arrays;
+
+/**
+ * De rekenoperatoren van ICSS met hun rekenregels. De Checker, de Evaluator en de Generator
+ * gebruiken allemaal deze tabel, zodat ze het altijd eens zijn over welke operaties geldig zijn.
+ *
+ * Het resultaattype staat in een tabel per (operator, type links, type rechts); UNDEFINED
+ * betekent een ongeldige operatie. Optellen en aftrekken kan alleen met twee gelijke numerieke
+ * types, vermenigvuldigen als minstens één kant een scalar is.
+ */
+public enum Operator {
+    ADD("+") {
+        @Override
+        public int compute(int lhs, int rhs) {
+            return lhs + rhs;
+        }
+    },
+    SUBTRACT("-") {
+        @Override
+        public int compute(int lhs, int rhs) {
+            return lhs - rhs;
+        }
+    },
+    MULTIPLY("*") {
+        @Override
+        public int compute(int lhs, int rhs) {
+            return lhs * rhs;
+        }
+    };
+
+    private static final ExpressionType[] TYPES = ExpressionType.values();
+
+    // Resultaattype per [operator][type links][type rechts], geïndexeerd met ordinal()
+    private static final ExpressionType[][][] RESULT_TYPES = new ExpressionType[values().length][TYPES.length][TYPES.length];
+
+    static {
+        for (ExpressionType[][] table : RESULT_TYPES) {
+            for (ExpressionType[] row : table) {
+                Arrays.fill(row, ExpressionType.UNDEFINED);
+            }
+        }
+        for (ExpressionType type : new ExpressionType[]{ExpressionType.PIXEL, ExpressionType.PERCENTAGE, ExpressionType.SCALAR}) {
+            define(ADD, type, type, type);
+            define(SUBTRACT, type, type, type);
+            define(MULTIPLY, ExpressionType.SCALAR, type, type);
+            define(MULTIPLY, type, ExpressionType.SCALAR, type);
+        }
+    }
+
+    private static void define(Operator operator, ExpressionType lhs, ExpressionType rhs, ExpressionType result) {
+        RESULT_TYPES[operator.ordinal()][lhs.ordinal()][rhs.ordinal()] = result;
+    }
+
+    public final String symbol;
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * @return het type van het resultaat, of UNDEFINED als de operatie niet mag
+     */
+    public ExpressionType resultType(ExpressionType lhs, ExpressionType rhs) {
+        return RESULT_TYPES[ordinal()][lhs.ordinal()][rhs.ordinal()];
+    }
+
+    /**
+     * Rekent de operator uit op de getalwaarden van de operanden, zonder naar de types te kijken.
+     */
+    public abstract int compute(int lhs, int rhs);
+
+    /**
+     * Rekent de operatie uit op twee literals.
+     * @return het resultaat, of een scalar 0 als de operatie niet mag
+     */
+    public Literal apply(Literal lhs, Literal rhs) {
+        ExpressionType type = resultType(lhs.getType(), rhs.getType());
+        switch (type) {
+            case PIXEL:
+                return PixelLiteral.valueOf(compute(valueOf(lhs), valueOf(rhs)));
+            case PERCENTAGE:
+                return PercentageLiteral.valueOf(compute(valueOf(lhs), valueOf(rhs)));
+            case SCALAR:
+                return ScalarLiteral.valueOf(compute(valueOf(lhs), valueOf(rhs)));
+            default:
+                return ScalarLiteral.valueOf(0);
+        }
+    }
+
+    // Getalwaarde van een numerieke literal
+    private static int valueOf(Literal literal) {
+        switch (literal.getType()) {
+            case PIXEL:
+                return ((PixelLiteral) literal).value;
+            case PERCENTAGE:
+                return ((PercentageLiteral) literal).value;
+            default:
+                return ((ScalarLiteral) literal).value;
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package nl.han.ica.icss.checker;
 
-import nl.han.ica.datastructures.HANLinkedList;
-import nl.han.ica.datastructures.IHANLinkedList;
+import nl.han.ica.datastructures.SymbolTable;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
 import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.ast.types.Operator;
 
-import java.util.HashMap;
+import java.util.*;
 
 //public class Checker {
 //    private IHANLinkedList<HashMap<String, ExpressionType>> variableTypes;
@@ -16,168 +22,683 @@ import java.util.HashMap;
 //    }
 //}
 
-public class Checker {
+public class Checker implements ASTVisitor<ExpressionType, Void> {
 
-    private HANLinkedList<HashMap<String, ExpressionType>> variableTypes;
+    private static final String CONDITION_ERROR = "De conditie van een if-statement moet een boolean zijn.";
 
+    // Type van elke variabele, per scope
+    private SymbolTable<ExpressionType> variableTypes;
+
+    // Type van elke gecontroleerde expressie. Elke expressie wordt zo maar één keer getypeerd,
+    // de controles en latere stappen lezen het opgeslagen type.
+    private IdentityHashMap<Expression, ExpressionType> expressionTypes = new IdentityHashMap<>();
+
+    // Def-use graaf van de laatst gecontroleerde AST: per top-level item welke variabelen het
+    // gebruikt en definieert, en per variabele-id de items die hem gebruiken
+    private IdentityHashMap<ASTNode, Item> items = new IdentityHashMap<>();
+    private HashMap<Integer, Set<ASTNode>> readers = new HashMap<>();
+
+    private int generation = 0;
+
+    // Ids van de variabelen, overgenomen van de gecontroleerde AST; blijft bij recheck hetzelfde
+    private VariableIds variableIds;
+
+    private Item currentItem; // Item dat nu gecontroleerd wordt, null als er niets bijgehouden wordt
+    private ASTNode currentUser; // Declaratie, operatie, if of toekenning die nu een variabele gebruikt
+
+    // Doorloopt statements en expressies zonder recursie, zodat de nesting alleen door het geheugen begrensd wordt
+    private final Traversal traversal = new Traversal();
+    private final Traversal.Walker statements = new StatementWalker();
+    private final Traversal.Folder<ExpressionType> types = new TypeFolder();
+    private final Traversal.FlatWalker flatStatements = new FlatStatementWalker();
+    private final Traversal.FlatFolder<ExpressionType> flatTypes = new FlatTypeFolder();
+
+    // Wat de controle van één top-level item gebruikt en oplevert
+    private static class Item {
+        final ArrayList<Integer> useIds = new ArrayList<>();
+        final ArrayList<ASTNode> useNodes = new ArrayList<>(); // Knoop die useIds[i] gebruikt
+        int definedId = -1; // Globale variabele die het item definieert, of -1
+        ExpressionType definedType;
+        int generation; // Laatste recheck waarin het item nog in de AST stond
+    }
+
+    /**
+     * Controleert de AST en zet de fouten op de knopen.
+     * @param ast de te controleren AST
+     * @throws IllegalArgumentException als de AST gedeelde knopen bevat (zie {@link NodeTable}),
+     * want dan zou een fout op de ene plek ook op de andere plekken van de knoop staan
+     */
     public void check(AST ast) {
-        variableTypes = new HANLinkedList<>();
-        variableTypes.addFirst(new HashMap<>()); // globale scope
-        checkNode(ast.root);
+        rejectInterned(ast.root);
+        begin();
+        items = new IdentityHashMap<>();
+        readers = new HashMap<>();
+        for (ASTNode item : ast.root.body) {
+            items.put(item, checkItem(item));
+        }
     }
 
-    private void checkNode(ASTNode node) {
-        // === 1. Nieuwe scope starten (stylerule of if/else) ===
-        if (node instanceof Stylerule || node instanceof IfClause || node instanceof ElseClause) {
-            variableTypes.addFirst(new HashMap<>());
-        }
-
-        // === 2. Variabele declaratie ===
-        if (node instanceof VariableAssignment) {
-            VariableAssignment varAssign = (VariableAssignment) node;
-            ExpressionType type = determineType(varAssign.expression);
-
-            // -------------------------
-            // Nieuwe eis (taaluitbreiding): typeconsistentie van variabelen
-            // -------------------------
-            // Als de variabele al eerder gedeclareerd is in de huidige of een buitenliggende scope,
-            // controleer dan of het nieuwe type gelijk is aan het eerdere type.
-            for (HashMap<String, ExpressionType> scope : variableTypes) {
-                if (scope.containsKey(varAssign.name.name)) {
-                    ExpressionType oldType = scope.get(varAssign.name.name);
-                    if (oldType != type) {
-                        // Als het type verschilt, foutmelding geven.
-                        node.setError("Variabele " + varAssign.name.name
-                                + " had eerder type " + oldType
-                                + " maar krijgt nu type " + type + ".");
-                    }
-                    // Stop, we hebben de variabele al gevonden.
-                    return;
+    /**
+     * Controleert een gewijzigde versie van de laatst met {@link #check(AST)} of
+     * {@link #recheck(AST)} gecontroleerde AST. Top-level items die in beide versies voorkomen
+     * (dezelfde instantie) gelden als ongewijzigd en houden hun fouten. Alleen nieuwe items en
+     * items die een variabele gebruiken waarvan de definitie verdwenen, toegevoegd of van type
+     * veranderd is, worden opnieuw gecontroleerd. Het resultaat is gelijk aan een volledige
+     * controle.
+     * @param ast de gewijzigde AST
+     * @throws IllegalArgumentException als de AST gedeelde knopen bevat
+     */
+    public void recheck(AST ast) {
+        rejectInterned(ast.root);
+        variableTypes = new SymbolTable<>();
+        variableTypes.pushScope();
+        generation++;
+
+        // Zoek de bekende items op; wat niet meer in de body staat is verwijderd
+        ArrayList<ASTNode> body = ast.root.body;
+        Item[] known = new Item[body.size()];
+        int found = 0;
+        for (int i = 0; i < known.length; i++) {
+            known[i] = items.get(body.get(i));
+            if (known[i] != null && known[i].generation != generation) {
+                known[i].generation = generation;
+                found++;
+            }
+        }
+        HashSet<Integer> changedIds = new HashSet<>();
+        Set<ASTNode> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (found < items.size()) {
+            Iterator<Map.Entry<ASTNode, Item>> entries = items.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<ASTNode, Item> entry = entries.next();
+                if (entry.getValue().generation != generation) {
+                    // De definities van een verwijderd item verdwijnen
+                    removeReaders(entry.getKey(), entry.getValue());
+                    forget(entry.getKey(), false);
+                    markChanged(entry.getValue().definedId, changedIds, dirty);
+                    entries.remove();
                 }
             }
-
-            // Als de variabele nog niet eerder gedeclareerd was, voeg hem toe in de huidige scope.
-            variableTypes.getFirst().put(varAssign.name.name, type);
         }
 
-
-        // === 3. Declaraties controleren ===
-        else if (node instanceof Declaration) {
-            Declaration decl = (Declaration) node;
-            ExpressionType valueType = determineType(decl.expression);
-            String property = decl.property.name;
-
-            if (property.equals("color") || property.equals("background-color")) {
-                if (valueType != ExpressionType.COLOR) {
-                    node.setError("Property " + property + " verwacht een kleurwaarde.");
+        for (int i = 0; i < known.length; i++) {
+            ASTNode item = body.get(i);
+            Item old = known[i];
+            if (old != null && !dirty.contains(item)) {
+                // Niets wat het item gebruikt is veranderd, dus ook zijn definitie niet
+                if (old.definedId >= 0) {
+                    variableTypes.define(old.definedId, old.definedType);
+                }
+                continue;
+            }
+            if (old != null) {
+                removeReaders(item, old);
+                forget(item, true);
+            }
+            Item checked = checkItem(item);
+            items.put(item, checked);
+            if (old == null || old.definedId != checked.definedId || old.definedType != checked.definedType) {
+                if (old != null) {
+                    markChanged(old.definedId, changedIds, dirty);
                 }
+                markChanged(checked.definedId, changedIds, dirty);
             }
+        }
+    }
 
-            if (property.equals("width") || property.equals("height")) {
-                if (valueType != ExpressionType.PIXEL && valueType != ExpressionType.PERCENTAGE) {
-                    node.setError("Property " + property + " verwacht een numerieke waarde (px of %).");
+    /**
+     * @param name naam van een variabele
+     * @return de declaraties, operaties, if-statements en toekenningen in de laatst gecontroleerde
+     * AST die de variabele direct gebruiken
+     */
+    public List<ASTNode> getUses(String name) {
+        int id = variableIds != null ? variableIds.find(name) : -1;
+        ArrayList<ASTNode> uses = new ArrayList<>();
+        for (ASTNode item : readers.getOrDefault(id, Collections.emptySet())) {
+            Item info = items.get(item);
+            for (int i = 0; i < info.useIds.size(); i++) {
+                if (info.useIds.get(i) == id && !uses.contains(info.useNodes.get(i))) {
+                    uses.add(info.useNodes.get(i));
                 }
             }
         }
+        return uses;
+    }
 
-        // === 4. Expressions in if/operation controleren ===
-        if (node instanceof IfClause) {
-            IfClause ifNode = (IfClause) node;
-            determineType(ifNode.conditionalExpression);
+    // Controleert een top-level item in de globale scope en legt vast wat het gebruikt
+    private Item checkItem(ASTNode item) {
+        Item info = new Item();
+        info.generation = generation;
+        currentItem = info;
+        int assigned = item instanceof VariableAssignment ? variableId(((VariableAssignment) item).name) : -1;
+        boolean wasDefined = assigned >= 0 && variableTypes.isDefined(assigned);
+        checkNode(item);
+        currentItem = null;
+        if (assigned >= 0 && !wasDefined) {
+            info.definedId = assigned;
+            info.definedType = variableTypes.lookup(assigned);
         }
+        for (int id : info.useIds) {
+            readers.computeIfAbsent(id, key -> Collections.newSetFromMap(new IdentityHashMap<>())).add(item);
+        }
+        return info;
+    }
 
-        // === Controle op operaties ===
-        if (node instanceof Operation) {
-            Operation opNode = (Operation) node;
+    private int variableId(VariableReference reference) {
+        variableIds = VariableIds.adopt(variableIds, reference);
+        return variableIds.idOf(reference);
+    }
 
-            // Bepaal de types van de linker- en rechterkant
-            ExpressionType leftType = determineType(opNode.lhs);
-            ExpressionType rightType = determineType(opNode.rhs);
+    private void recordUse(int id) {
+        if (currentItem != null) {
+            currentItem.useIds.add(id);
+            currentItem.useNodes.add(currentUser);
+        }
+    }
 
-            // Controleer of een van beide kleuren bevat
-            if (leftType == ExpressionType.COLOR || rightType == ExpressionType.COLOR) {
-                node.setError("Kleuren mogen niet gebruikt worden in operaties (+, -, *).");
+    private void removeReaders(ASTNode item, Item info) {
+        for (int id : info.useIds) {
+            Set<ASTNode> users = readers.get(id);
+            if (users != null) {
+                users.remove(item);
             }
+        }
+    }
 
-            // Controleer of beide zijden numeriek zijn
-            if (!(leftType == ExpressionType.PIXEL || leftType == ExpressionType.PERCENTAGE || leftType == ExpressionType.SCALAR) ||
-                    !(rightType == ExpressionType.PIXEL || rightType == ExpressionType.PERCENTAGE || rightType == ExpressionType.SCALAR)) {
-                node.setError("Operaties mogen alleen uitgevoerd worden op numerieke waarden (px, %, scalar).");
-            }
+    // De variabele is veranderd: alle items die hem gebruiken moeten opnieuw gecontroleerd worden
+    private void markChanged(int id, Set<Integer> changedIds, Set<ASTNode> dirty) {
+        if (id >= 0 && changedIds.add(id)) {
+            dirty.addAll(readers.getOrDefault(id, Collections.emptySet()));
         }
+    }
+
+    // Verwijdert de opgeslagen types van een subboom, en eventueel de fouten
+    private void forget(ASTNode root, boolean clearErrors) {
+        traversal.walk(root, node -> {
+            if (clearErrors) {
+                node.clearError();
+            }
+            if (node instanceof Expression) {
+                expressionTypes.remove(node);
+            }
+            return true;
+        });
+    }
 
+    /**
+     * Start een nieuwe controle met een lege globale scope. Daarna kan een stylesheet
+     * deel voor deel gecontroleerd worden met {@link #checkNext(AST)}.
+     */
+    public void begin() {
+        expressionTypes = new IdentityHashMap<>();
+        variableIds = null;
+        variableTypes = new SymbolTable<>();
+        variableTypes.pushScope(); // globale scope
+    }
 
-        // === 5. Kinderen recursief controleren ===
-        for (ASTNode child : node.getChildren()) {
-            checkNode(child);
+    /**
+     * Controleert het volgende deel van een stylesheet. Globale variabelen uit eerdere
+     * delen blijven zichtbaar, net alsof alle delen één stylesheet vormen.
+     * @param part AST met de volgende top-level regels
+     * @throws IllegalArgumentException als het deel gedeelde knopen bevat
+     */
+    public void checkNext(AST part) {
+        rejectInterned(part.root);
+        // Alleen de types van het laatste deel bewaren, zodat het geheugen niet groeit
+        expressionTypes.clear();
+        checkNode(part.root);
+    }
+
+    private void checkNode(ASTNode node) {
+        traversal.walk(node, statements);
+    }
+
+    // Fouten komen op de knopen zelf te staan. Een gedeelde knoop uit een NodeTable staat op
+    // meerdere plekken, in scopes met andere variabelen, en zou de fout van de ene plek ook op de
+    // andere laten zien. Zo'n AST wordt daarom geweigerd voordat er iets gecontroleerd wordt.
+    private void rejectInterned(ASTNode root) {
+        traversal.walk(root, node -> {
+            if (node.isInterned()) {
+                throw new IllegalArgumentException("Een AST met gedeelde knopen (NodeTable) kan niet gecontroleerd worden.");
+            }
+            return true;
+        });
+    }
+
+    // Controleert een statement dat via accept bezocht wordt
+    private void checkVisited(ASTNode node) {
+        rejectInterned(node);
+        checkNode(node);
+    }
+
+    // -------------------------
+    // Statements (geven geen type terug)
+    // -------------------------
+
+    @Override
+    public ExpressionType visitStylesheet(Stylesheet node, Void context) {
+        checkVisited(node);
+        return null;
+    }
+
+    @Override
+    public ExpressionType visitStylerule(Stylerule node, Void context) {
+        checkVisited(node);
+        return null;
+    }
+
+    @Override
+    public ExpressionType visitVariableAssignment(VariableAssignment node, Void context) {
+        checkVisited(node);
+        return null;
+    }
+
+    @Override
+    public ExpressionType visitDeclaration(Declaration node, Void context) {
+        checkVisited(node);
+        return null;
+    }
+
+    @Override
+    public ExpressionType visitIfClause(IfClause node, Void context) {
+        checkVisited(node);
+        return null;
+    }
+
+    @Override
+    public ExpressionType visitElseClause(ElseClause node, Void context) {
+        checkVisited(node);
+        return null;
+    }
+
+    // Controleert de statements; een scope gaat open bij het binnengaan en dicht na de kinderen
+    private class StatementWalker extends Traversal.VisitingWalker {
+
+        @Override
+        public Boolean visitStylesheet(Stylesheet node, Phase phase) {
+            return true;
         }
 
-        // === 6. Controleer of de conditie bij "if" een boolean is ===
-        if (node instanceof IfClause) {
-            IfClause ifNode = (IfClause) node;
+        @Override
+        public Boolean visitStylerule(Stylerule node, Phase phase) {
+            // Een stylerule opent een nieuwe scope; alleen de body, de selectors hoeven niet gecontroleerd te worden
+            if (phase == Phase.ENTER) {
+                variableTypes.pushScope();
+                visitChildren(node.body);
+            } else {
+                variableTypes.popScope();
+            }
+            return true;
+        }
 
-            ExpressionType conditionType = determineType(ifNode.conditionalExpression);
+        @Override
+        public Boolean visitIfClause(IfClause node, Phase phase) {
+            // If en else openen elk een eigen scope, de else binnen die van de if
+            if (phase == Phase.EXIT) {
+                variableTypes.popScope();
+                return true;
+            }
+            variableTypes.pushScope();
+            ASTNode user = currentUser;
+            currentUser = node;
+            ExpressionType conditionType = determineType(node.conditionalExpression);
+            currentUser = user;
 
+            // Controleer of de conditie bij "if" een boolean is; daarna wordt ze als expressie overgeslagen
             if (conditionType != ExpressionType.BOOL) {
-                ifNode.setError("De conditie van een if-statement moet een boolean zijn.");
+                node.setError(CONDITION_ERROR);
             }
+            return true;
         }
 
-        // === 7. Scope verlaten ===
-        if (node instanceof Stylerule || node instanceof IfClause || node instanceof ElseClause) {
-            variableTypes.removeFirst();
+        @Override
+        public Boolean visitElseClause(ElseClause node, Phase phase) {
+            if (phase == Phase.ENTER) {
+                variableTypes.pushScope();
+            } else {
+                variableTypes.popScope();
+            }
+            return true;
         }
 
+        @Override
+        public Boolean visitVariableAssignment(VariableAssignment node, Phase phase) {
+            checkVariableAssignment(node);
+            return false;
+        }
 
+        @Override
+        public Boolean visitDeclaration(Declaration node, Phase phase) {
+            checkDeclaration(node);
+            return false;
+        }
     }
 
+    private void checkVariableAssignment(VariableAssignment node) {
+        ASTNode user = currentUser;
+        currentUser = node;
+        int id = variableId(node.name);
+        recordUse(id);
+        String error = assignVariable(id, node.name.name, determineType(node.expression));
+        currentUser = user;
+        if (error != null) {
+            node.setError(error);
+        }
+    }
 
-    private ExpressionType determineType(Expression expression) {
-        if (expression instanceof ColorLiteral) return ExpressionType.COLOR;
-        if (expression instanceof PixelLiteral) return ExpressionType.PIXEL;
-        if (expression instanceof PercentageLiteral) return ExpressionType.PERCENTAGE;
-        if (expression instanceof ScalarLiteral) return ExpressionType.SCALAR;
-        if (expression instanceof BoolLiteral) return ExpressionType.BOOL;
-
-        if (expression instanceof VariableReference) {
-            VariableReference ref = (VariableReference) expression;
-            for (HashMap<String, ExpressionType> scope : variableTypes) {
-                if (scope.containsKey(ref.name)) {
-                    return scope.get(ref.name);
-                }
+    // Legt het type van een variabele vast, geeft een foutmelding terug of null
+    private String assignVariable(int id, String name, ExpressionType type) {
+        // -------------------------
+        // Nieuwe eis (taaluitbreiding): typeconsistentie van variabelen
+        // -------------------------
+        // Als de variabele al eerder gedeclareerd is in de huidige of een buitenliggende scope,
+        // controleer dan of het nieuwe type gelijk is aan het eerdere type.
+        ExpressionType oldType = variableTypes.lookup(id);
+        if (oldType != null) {
+            if (oldType != type) {
+                // Als het type verschilt, foutmelding geven.
+                return "Variabele " + name
+                        + " had eerder type " + oldType
+                        + " maar krijgt nu type " + type + ".";
             }
-            expression.setError("Variabele " + ref.name + " is niet gedefinieerd.");
-            return ExpressionType.UNDEFINED;
+            // Stop, we hebben de variabele al gevonden.
+            return null;
         }
 
-        if (expression instanceof Operation) {
-            Operation op = (Operation) expression;
-            ExpressionType leftType = determineType(op.lhs);
-            ExpressionType rightType = determineType(op.rhs);
+        // Als de variabele nog niet eerder gedeclareerd was, voeg hem toe in de huidige scope.
+        variableTypes.define(id, type);
+        return null;
+    }
 
-            // Kleuren mogen niet in operaties
-            if (leftType == ExpressionType.COLOR || rightType == ExpressionType.COLOR) {
-                expression.setError("Kleuren mogen niet gebruikt worden in operaties (+, -, *).");
-                return ExpressionType.UNDEFINED;
+    private void checkDeclaration(Declaration node) {
+        ASTNode user = currentUser;
+        currentUser = node;
+        String error = checkDeclaration(node.property.name, determineType(node.expression));
+        currentUser = user;
+        if (error != null) {
+            node.setError(error);
+        }
+    }
+
+    // Controleert of de waarde bij de property past, geeft een foutmelding terug of null
+    private static String checkDeclaration(String property, ExpressionType valueType) {
+        if (property.equals("color") || property.equals("background-color")) {
+            if (valueType != ExpressionType.COLOR) {
+                return "Property " + property + " verwacht een kleurwaarde.";
             }
+        }
 
-            // Als beide numeriek zijn, is de operatie numeriek
-            if ((leftType == ExpressionType.PIXEL || leftType == ExpressionType.PERCENTAGE || leftType == ExpressionType.SCALAR) &&
-                    (rightType == ExpressionType.PIXEL || rightType == ExpressionType.PERCENTAGE || rightType == ExpressionType.SCALAR)) {
+        if (property.equals("width") || property.equals("height")) {
+            if (valueType != ExpressionType.PIXEL && valueType != ExpressionType.PERCENTAGE) {
+                return "Property " + property + " verwacht een numerieke waarde (px of %).";
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ExpressionType visitPropertyName(PropertyName node, Void context) {
+        return null;
+    }
+
+    @Override
+    public ExpressionType visitClassSelector(ClassSelector node, Void context) {
+        return null;
+    }
+
+    @Override
+    public ExpressionType visitIdSelector(IdSelector node, Void context) {
+        return null;
+    }
+
+    @Override
+    public ExpressionType visitTagSelector(TagSelector node, Void context) {
+        return null;
+    }
+
+    // -------------------------
+    // Expressions (geven hun type terug)
+    // -------------------------
 
-                // Pixel + Pixel = Pixel, Percentage + Percentage = Percentage, Pixel + Percentage? Kies PIXEL als default
-                if (leftType == ExpressionType.PIXEL && rightType == ExpressionType.PIXEL) return ExpressionType.PIXEL;
-                if (leftType == ExpressionType.PERCENTAGE && rightType == ExpressionType.PERCENTAGE) return ExpressionType.PERCENTAGE;
+    private ExpressionType determineType(Expression expression) {
+        return traversal.fold(expression, types);
+    }
+
+    // Typeert een expressie van onder naar boven; operaties gebruiken de types van hun operanden
+    private class TypeFolder implements Traversal.Folder<ExpressionType> {
+
+        @Override
+        public ExpressionType known(Expression expression) {
+            // Gedeelde knopen (NodeTable) komen niet voor, zie rejectInterned
+            return expressionTypes.get(expression);
+        }
 
-                return ExpressionType.SCALAR; // mengvorm voor gemengde types
+        @Override
+        public ExpressionType leaf(Expression expression, Operation parent) {
+            // Een variabele in een operatie wordt door die operatie gebruikt
+            ASTNode user = currentUser;
+            if (parent != null) {
+                currentUser = parent;
             }
+            ExpressionType type = expression.accept(Checker.this, null);
+            currentUser = user;
+            expressionTypes.put(expression, type);
+            return type;
+        }
 
-            // anders ongeldig
-            expression.setError("Operaties mogen alleen op numerieke waarden (px, %, scalar).");
+        @Override
+        public ExpressionType operation(Operation op, ExpressionType leftType, ExpressionType rightType) {
+            ExpressionType type = op.getOperator().resultType(leftType, rightType);
+            if (type == ExpressionType.UNDEFINED) {
+                op.setError(operationError(op.getOperator(), leftType, rightType));
+            }
+            expressionTypes.put(op, type);
+            return type;
+        }
+
+        @Override
+        public ExpressionType missing() {
             return ExpressionType.UNDEFINED;
         }
+    }
+
+    /**
+     * @param expression een expressie uit de laatst gecontroleerde AST
+     * @return het type dat de Checker voor de expressie bepaald heeft, of null als de expressie
+     * niet gecontroleerd is. Bij {@link #checkNext(AST)} alleen voor het laatste deel.
+     */
+    public ExpressionType getType(Expression expression) {
+        return expressionTypes.get(expression);
+    }
+
+    @Override
+    public ExpressionType visitColorLiteral(ColorLiteral node, Void context) {
+        return ExpressionType.COLOR;
+    }
+
+    @Override
+    public ExpressionType visitPixelLiteral(PixelLiteral node, Void context) {
+        return ExpressionType.PIXEL;
+    }
+
+    @Override
+    public ExpressionType visitPercentageLiteral(PercentageLiteral node, Void context) {
+        return ExpressionType.PERCENTAGE;
+    }
+
+    @Override
+    public ExpressionType visitScalarLiteral(ScalarLiteral node, Void context) {
+        return ExpressionType.SCALAR;
+    }
+
+    @Override
+    public ExpressionType visitBoolLiteral(BoolLiteral node, Void context) {
+        return ExpressionType.BOOL;
+    }
+
+    @Override
+    public ExpressionType visitVariableReference(VariableReference node, Void context) {
+        int id = variableId(node);
+        recordUse(id);
+        ExpressionType type = variableTypes.lookup(id);
+        if (type == null) {
+            node.setError(undefinedError(node.name));
+            return ExpressionType.UNDEFINED;
+        }
+        return type;
+    }
+
+    private static String undefinedError(String name) {
+        return "Variabele " + name + " is niet gedefinieerd.";
+    }
+
+    @Override
+    public ExpressionType visitAddOperation(AddOperation node, Void context) {
+        return determineType(node);
+    }
+
+    @Override
+    public ExpressionType visitSubtractOperation(SubtractOperation node, Void context) {
+        return determineType(node);
+    }
+
+    @Override
+    public ExpressionType visitMultiplyOperation(MultiplyOperation node, Void context) {
+        return determineType(node);
+    }
+
+    private static String operationError(Operator operator, ExpressionType leftType, ExpressionType rightType) {
+        if (leftType == ExpressionType.COLOR || rightType == ExpressionType.COLOR) {
+            return "Kleuren mogen niet gebruikt worden in operaties (+, -, *).";
+        }
+        if (!isNumeric(leftType) || !isNumeric(rightType)) {
+            return "Operaties mogen alleen uitgevoerd worden op numerieke waarden (px, %, scalar).";
+        }
+        if (operator == Operator.MULTIPLY) {
+            return "Bij * moet minstens één kant een scalar zijn.";
+        }
+        return "Bij " + operator.symbol + " moeten beide kanten hetzelfde type hebben.";
+    }
+
+    private static boolean isNumeric(ExpressionType type) {
+        return type == ExpressionType.PIXEL || type == ExpressionType.PERCENTAGE || type == ExpressionType.SCALAR;
+    }
+
+    // -------------------------
+    // FlatAST
+    // -------------------------
+
+    /**
+     * Controleert een platte AST met dezelfde regels als {@link #check(AST)}. De fouten worden
+     * in de FlatAST op de knopen gezet.
+     * @param flat de te controleren AST
+     */
+    public void check(FlatAST flat) {
+        begin();
+        if (flat.size() > 0) {
+            traversal.walk(flat, flat.root(), flatStatements);
+        }
+    }
 
+    // Controleert de statements van een FlatAST met dezelfde regels als de StatementWalker
+    private class FlatStatementWalker implements Traversal.FlatWalker {
+
+        @Override
+        public boolean enter(FlatAST flat, int node) {
+            String error = null;
+            switch (flat.kind(node)) {
+                case FlatAST.STYLESHEET:
+                    return true;
+                case FlatAST.STYLERULE:
+                case FlatAST.ELSE_CLAUSE:
+                    variableTypes.pushScope();
+                    return true;
+                case FlatAST.IF_CLAUSE:
+                    variableTypes.pushScope();
+                    if (determineType(flat, flat.expression(node)) != ExpressionType.BOOL) {
+                        flat.setError(node, CONDITION_ERROR);
+                    }
+                    return true;
+                case FlatAST.VARIABLE_ASSIGNMENT: {
+                    int name = flat.firstChild(node);
+                    error = assignVariable(flat.variableId(name), flat.text(name),
+                            determineType(flat, flat.expression(node)));
+                    break;
+                }
+                case FlatAST.DECLARATION:
+                    error = checkDeclaration(flat.text(flat.firstChild(node)),
+                            determineType(flat, flat.expression(node)));
+                    break;
+                default:
+                    // Selectors
+                    break;
+            }
+            if (error != null) {
+                flat.setError(node, error);
+            }
+            return false;
+        }
 
-        return ExpressionType.UNDEFINED;
+        @Override
+        public int firstChild(FlatAST flat, int node) {
+            switch (flat.kind(node)) {
+                case FlatAST.STYLERULE: return flat.ruleBody(node);
+                // Body en eventueel de ElseClause; de conditie is al getypeerd
+                case FlatAST.IF_CLAUSE: return flat.childCount(node) > 0 ? flat.end(flat.firstChild(node)) : flat.end(node);
+                default: return flat.firstChild(node);
+            }
+        }
+
+        @Override
+        public void exit(FlatAST flat, int node) {
+            if (flat.kind(node) != FlatAST.STYLESHEET) {
+                variableTypes.popScope();
+            }
+        }
+    }
+
+    // Type van de expressie op positie node, UNDEFINED als node -1 is
+    private ExpressionType determineType(FlatAST flat, int node) {
+        return traversal.fold(flat, node, flatTypes);
+    }
+
+    // Typeert een expressie in een FlatAST; het type van een literal volgt uit zijn soort
+    private class FlatTypeFolder implements Traversal.FlatFolder<ExpressionType> {
+
+        @Override
+        public ExpressionType leaf(FlatAST flat, int node) {
+            switch (flat.kind(node)) {
+                case FlatAST.COLOR_LITERAL: return ExpressionType.COLOR;
+                case FlatAST.PIXEL_LITERAL: return ExpressionType.PIXEL;
+                case FlatAST.PERCENTAGE_LITERAL: return ExpressionType.PERCENTAGE;
+                case FlatAST.SCALAR_LITERAL: return ExpressionType.SCALAR;
+                case FlatAST.BOOL_LITERAL: return ExpressionType.BOOL;
+                case FlatAST.VARIABLE_REFERENCE: {
+                    ExpressionType type = variableTypes.lookup(flat.variableId(node));
+                    if (type == null) {
+                        flat.setError(node, undefinedError(flat.text(node)));
+                        return ExpressionType.UNDEFINED;
+                    }
+                    return type;
+                }
+                default:
+                    return ExpressionType.UNDEFINED;
+            }
+        }
+
+        @Override
+        public ExpressionType operation(FlatAST flat, int node, ExpressionType leftType, ExpressionType rightType) {
+            Operator operator = FlatAST.operator(flat.kind(node));
+            ExpressionType type = operator.resultType(leftType, rightType);
+            if (type == ExpressionType.UNDEFINED) {
+                flat.setError(node, operationError(operator, leftType, rightType));
+            }
+            return type;
+        }
+
+        @Override
+        public ExpressionType missing() {
+            return ExpressionType.UNDEFINED;
+        }
     }
-}
\ No newline at end of file
+}
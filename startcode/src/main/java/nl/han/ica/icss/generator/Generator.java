@@ -1,5 +1,6 @@
 package nl.han.ica.icss.generator;
 
+import nl.han.ica.datastructures.SymbolTable;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.AddOperation;
@@ -8,15 +9,28 @@ import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.transforms.ExpressionEvaluator;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
-public class Generator {
+public class Generator implements ASTVisitor<Literal, StringBuilder> {
 
 	// Indentatie voor nette CSS-output (2 spaties).
 	private static final String INDENT = "  ";
 
+	// Zet literals en selectors om naar CSS-tekst.
+	private static final CssText CSS_TEXT = new CssText();
+
+	// Scope-stack voor variabelen, opgezocht met het id van de variabele (zie VariableIds).
+	private SymbolTable<Literal> scopes;
+	private int indentLevel;
+
+	// Doorloopt statements en expressies zonder recursie, zodat de nesting alleen door het geheugen begrensd wordt
+	private final Traversal traversal = new Traversal();
+	private final Traversal.Walker statements = new StatementWalker();
+	private final ExpressionEvaluator values = new ExpressionEvaluator(traversal);
+	private StringBuilder output; // Builder waar de statements die nu doorlopen worden in schrijven
+
 	// -------------------------
 	// Publieke API
 	// -------------------------
@@ -26,289 +40,508 @@ public class Generator {
 			return "";
 		}
 
-		// Scope-stack voor variabelen (LIFO). Bovenste (peek) is de huidige scope.
-		Deque<Map<String, Literal>> scopes = new ArrayDeque<>();
-		scopes.push(new HashMap<>()); // globale scope
+		scopes = new SymbolTable<>();
+		scopes.pushScope(); // globale scope
+		indentLevel = 0;
+		values.reset();
 
-		// Verzamelt tekstuele CSS-blokken (één per stylerule).
-		List<String> blocks = new ArrayList<>();
+		StringBuilder builder = new StringBuilder();
+		ast.root.accept(this, builder);
 
+		// Globale scope sluiten.
+		scopes.popScope();
+		return builder.toString();
+	}
+
+	@Override
+	public Literal visitStylesheet(Stylesheet stylesheet, StringBuilder builder) {
 		// Doorloop top-level knopen: variabele-toekenningen en stylerules.
-		for (ASTNode node : ast.root.getChildren()) {
-			if (node instanceof VariableAssignment) {
-				// Top-level variabele toekennen: eerst rechterkant evalueren, dan opslaan in huidige scope.
-				VariableAssignment assignment = (VariableAssignment) node;
-				Literal value = evaluateExpression(assignment.expression, scopes);
-				assignment.expression = value; // Let op: dit muteert de AST (bewust ontwerp).
-				assignVariable(scopes, assignment.name.name, value);
-			} else if (node instanceof Stylerule) {
-				// Genereer CSS voor een volledige stylerule en voeg toe aan output.
-				blocks.add(renderStylerule((Stylerule) node, scopes));
-			}
-		}
+		appendStatement(stylesheet, builder);
+		return null;
+	}
 
-		// Globale scope sluiten.
-		scopes.pop();
+	@Override
+	public Literal visitStylerule(Stylerule stylerule, StringBuilder builder) {
+		appendStatement(stylerule, builder);
+		return null;
+	}
 
-		// CSS-blokken scheiden met een lege regel.
-		return String.join("\n\n", blocks);
+	@Override
+	public Literal visitVariableAssignment(VariableAssignment assignment, StringBuilder builder) {
+		appendStatement(assignment, builder);
+		return null;
+	}
+
+	@Override
+	public Literal visitDeclaration(Declaration declaration, StringBuilder builder) {
+		appendStatement(declaration, builder);
+		return null;
+	}
+
+	@Override
+	public Literal visitIfClause(IfClause ifClause, StringBuilder builder) {
+		appendStatement(ifClause, builder);
+		return null;
+	}
+
+	@Override
+	public Literal visitElseClause(ElseClause elseClause, StringBuilder builder) {
+		appendStatement(elseClause, builder);
+		return null;
 	}
 
 	// -------------------------
-	// Stylerule-rendering
+	// Body/Statements verwerken
 	// -------------------------
-	private String renderStylerule(Stylerule stylerule, Deque<Map<String, Literal>> scopes) {
-		StringBuilder builder = new StringBuilder();
+	private void appendStatement(ASTNode statement, StringBuilder builder) {
+		StringBuilder outer = output;
+		output = builder;
+		try {
+			traversal.walk(statement, statements);
+		} finally {
+			output = outer;
+		}
+	}
 
-		// Selector-lijst naar tekst, met komma’s gescheiden (bijv. "p, .class, #id").
-		String selectorText = stylerule.selectors.stream()
-				.map(this::selectorToString)
-				.collect(Collectors.joining(", "));
-		builder.append(selectorText).append(" {\n");
+	// Declaraties, variabele-toekenningen en if-clauses leveren elk hun eigen bijdrage. Een stylerule
+	// of if opent bij het binnengaan een scope en sluit die na zijn body.
+	private class StatementWalker extends Traversal.VisitingWalker {
 
-		// Nieuwe lokale scope voor deze stylerule.
-		scopes.push(new HashMap<>());
-		appendStatements(stylerule.body, builder, scopes, 1);
-		scopes.pop();
+		@Override
+		public Boolean visitStylesheet(Stylesheet node, Phase phase) {
+			return true;
+		}
 
-		builder.append("}");
-		return builder.toString();
+		@Override
+		public Boolean visitStylerule(Stylerule node, Phase phase) {
+			if (phase == Phase.ENTER) {
+				openStylerule(node, output);
+				visitChildren(node.body);
+			} else {
+				indentLevel--;
+				scopes.popScope();
+				output.append("}");
+			}
+			return true;
+		}
+
+		@Override
+		public Boolean visitIfClause(IfClause node, Phase phase) {
+			if (phase == Phase.ENTER) {
+				visitChildren(chooseBranch(node));
+			} else {
+				// If/else-scope sluiten.
+				scopes.popScope();
+			}
+			return true;
+		}
+
+		@Override
+		public Boolean visitElseClause(ElseClause node, Phase phase) {
+			// De gekozen tak van een if is al een body, een losse else levert alleen zijn kinderen op
+			return true;
+		}
+
+		@Override
+		public Boolean visitVariableAssignment(VariableAssignment node, Phase phase) {
+			appendVariableAssignment(node);
+			return false;
+		}
+
+		@Override
+		public Boolean visitDeclaration(Declaration node, Phase phase) {
+			appendDeclaration(node, output);
+			return false;
+		}
 	}
 
 	// -------------------------
-	// Body/Statements verwerken
+	// Stylerule-rendering
 	// -------------------------
-	private void appendStatements(List<ASTNode> statements, StringBuilder builder,
-								  Deque<Map<String, Literal>> scopes, int indentLevel) {
-		// Verwerk alleen declaraties, variabele-toekenningen en if-clauses.
-		for (ASTNode statement : statements) {
-			if (statement instanceof Declaration) {
-				// Eigenschap: waarde genereren met correcte evaluatie.
-				appendDeclaration((Declaration) statement, builder, scopes, indentLevel);
-
-			} else if (statement instanceof VariableAssignment) {
-				// Variabele binnen de stylerule toekennen: evalueren en in huidige scope plaatsen.
-				VariableAssignment assignment = (VariableAssignment) statement;
-				Literal value = evaluateExpression(assignment.expression, scopes);
-				assignment.expression = value; // Let op: muteert de AST.
-				assignVariable(scopes, assignment.name.name, value);
-
-			} else if (statement instanceof IfClause) {
-				// Voorwaardelijke sectie renderen.
-				appendIfClause((IfClause) statement, builder, scopes, indentLevel);
+	private void openStylerule(Stylerule stylerule, StringBuilder builder) {
+		// CSS-blokken scheiden met een lege regel.
+		if (builder.length() > 0) {
+			builder.append("\n\n");
+		}
+
+		// Selector-lijst naar tekst, met komma’s gescheiden (bijv. "p, .class, #id").
+		for (int i = 0; i < stylerule.selectors.size(); i++) {
+			if (i > 0) {
+				builder.append(", ");
 			}
+			builder.append(stylerule.selectors.get(i).accept(CSS_TEXT, null));
 		}
+		builder.append(" {\n");
+
+		// Nieuwe lokale scope voor deze stylerule, gesloten na de body.
+		scopes.pushScope();
+		indentLevel++;
+	}
+
+	private void appendVariableAssignment(VariableAssignment assignment) {
+		// Variabele toekennen: eerst rechterkant evalueren, dan opslaan in de scope.
+		// De AST wordt niet veranderd, zodat hij gedeeld en opnieuw gebruikt kan worden.
+		Literal value = evaluateExpression(assignment.expression);
+		scopes.assign(values.variableId(assignment.name), value);
 	}
 
 	// -------------------------
 	// Declaration genereren
 	// -------------------------
-	private void appendDeclaration(Declaration declaration, StringBuilder builder,
-								   Deque<Map<String, Literal>> scopes, int indentLevel) {
+	private void appendDeclaration(Declaration declaration, StringBuilder builder) {
 		// Expression evalueren naar Literal en als CSS-tekst uitschrijven.
-		Literal literal = evaluateExpression(declaration.expression, scopes);
-		declaration.expression = literal; // Let op: muteert de AST (expression wordt Literal).
+		Literal literal = evaluateExpression(declaration.expression);
 
 		builder.append(INDENT.repeat(indentLevel))
 				.append(declaration.property.name)
 				.append(": ")
-				.append(literalToCss(literal))
+				.append(literal.accept(CSS_TEXT, null))
 				.append(";\n");
 	}
 
 	// -------------------------
 	// IfClause verwerken
 	// -------------------------
-	private void appendIfClause(IfClause ifClause, StringBuilder builder,
-								Deque<Map<String, Literal>> scopes, int indentLevel) {
+	private List<ASTNode> chooseBranch(IfClause ifClause) {
 		// Voorwaarde evalueren naar boolean.
-		Literal conditionLiteral = evaluateExpression(ifClause.conditionalExpression, scopes);
+		Literal conditionLiteral = evaluateExpression(ifClause.conditionalExpression);
 		boolean condition = conditionLiteral instanceof BoolLiteral && ((BoolLiteral) conditionLiteral).value;
 
 		// Hier wordt een extra scope geopend voor de if/else-body.
 		// Dat betekent dat variabele-toekenningen binnen de if/else NIET
 		// zichtbaar zijn buiten de if/else voor latere declaraties in dezelfde stylerule.
 		// Moet volgens mij van Assignment.md Scope-regels
-		scopes.push(new HashMap<>());
-
-		// Kies de juiste body op basis van de voorwaarde.
-		List<ASTNode> chosenBody = condition
-				? ifClause.body
-				: ifClause.elseClause != null ? ifClause.elseClause.body : Collections.emptyList();
+		scopes.pushScope();
 
 		// Genereer statements van de gekozen tak, met dezelfde indentatie.
-		appendStatements(chosenBody, builder, scopes, indentLevel);
+		if (condition) {
+			return ifClause.body;
+		}
+		return ifClause.elseClause != null ? ifClause.elseClause.body : List.of();
+	}
+
+	// Knopen die zelf geen CSS opleveren.
+	@Override
+	public Literal visitPropertyName(PropertyName node, StringBuilder builder) {
+		return null;
+	}
 
-		// If/else-scope sluiten.
-		scopes.pop();
+	@Override
+	public Literal visitClassSelector(ClassSelector node, StringBuilder builder) {
+		return null;
+	}
+
+	@Override
+	public Literal visitIdSelector(IdSelector node, StringBuilder builder) {
+		return null;
+	}
+
+	@Override
+	public Literal visitTagSelector(TagSelector node, StringBuilder builder) {
+		return null;
 	}
 
 	// -------------------------
-	// Helpers: selectors en literals
+	// Expressie-evaluatie
 	// -------------------------
-	private String selectorToString(Selector selector) {
-		// Bekende selector-types: gebruik hun toString().
-		if (selector instanceof ClassSelector || selector instanceof IdSelector || selector instanceof TagSelector) {
-			return selector.toString();
+	private Literal evaluateExpression(Expression expression) {
+		return values.evaluate(expression, scopes);
+	}
+
+	// Literals zijn al eindresultaten.
+	@Override
+	public Literal visitPixelLiteral(PixelLiteral literal, StringBuilder builder) {
+		return literal;
+	}
+
+	@Override
+	public Literal visitPercentageLiteral(PercentageLiteral literal, StringBuilder builder) {
+		return literal;
+	}
+
+	@Override
+	public Literal visitScalarLiteral(ScalarLiteral literal, StringBuilder builder) {
+		return literal;
+	}
+
+	@Override
+	public Literal visitColorLiteral(ColorLiteral literal, StringBuilder builder) {
+		return literal;
+	}
+
+	@Override
+	public Literal visitBoolLiteral(BoolLiteral literal, StringBuilder builder) {
+		return literal;
+	}
+
+	@Override
+	public Literal visitVariableReference(VariableReference reference, StringBuilder builder) {
+		// Variabele-referentie: de binnenste scope waarin de variabele staat.
+		Literal value = scopes.lookup(values.variableId(reference));
+		// Niet gevonden → veilig fallback 0.
+		return value != null ? value : ScalarLiteral.valueOf(0);
+	}
+
+	@Override
+	public Literal visitAddOperation(AddOperation add, StringBuilder builder) {
+		return evaluateExpression(add);
+	}
+
+	@Override
+	public Literal visitSubtractOperation(SubtractOperation sub, StringBuilder builder) {
+		return evaluateExpression(sub);
+	}
+
+	@Override
+	public Literal visitMultiplyOperation(MultiplyOperation mul, StringBuilder builder) {
+		return evaluateExpression(mul);
+	}
+
+	// -------------------------
+	// FlatAST
+	// -------------------------
+
+	/**
+	 * Genereert CSS uit een platte AST, met dezelfde uitvoer als {@link #generate(AST)}.
+	 * De FlatAST wordt niet veranderd; expressies worden tijdens het genereren uitgerekend.
+	 * @param flat de AST
+	 * @return de CSS
+	 */
+	public String generate(FlatAST flat) {
+		if (flat == null || flat.size() == 0) {
+			return "";
 		}
-		// Fallback voor andere selector-types.
-		return selector.getNodeLabel();
+
+		scopes = new SymbolTable<>();
+		scopes.pushScope(); // globale scope
+		indentLevel = 0;
+
+		StringBuilder builder = new StringBuilder();
+		traversal.walk(flat, flat.root(), new FlatStatementWalker(builder));
+
+		scopes.popScope();
+		return builder.toString();
 	}
 
-	private String literalToCss(Literal literal) {
-		// Zet een Literal om naar CSS-tekst.
-		if (literal instanceof PixelLiteral) {
-			return ((PixelLiteral) literal).value + "px";
+	// Schrijft de statements van een FlatAST, net als de StatementWalker voor de objectboom.
+	private class FlatStatementWalker implements Traversal.FlatWalker {
+
+		private final StringBuilder builder;
+		private int chosenFirst, chosenEnd; // Gekozen tak van de IfClause die net binnengegaan is
+
+		FlatStatementWalker(StringBuilder builder) {
+			this.builder = builder;
 		}
-		if (literal instanceof PercentageLiteral) {
-			return ((PercentageLiteral) literal).value + "%";
+
+		@Override
+		public boolean enter(FlatAST flat, int node) {
+			switch (flat.kind(node)) {
+				case FlatAST.STYLESHEET:
+					return true;
+				case FlatAST.STYLERULE:
+					openStylerule(flat, node);
+					return true;
+				case FlatAST.IF_CLAUSE: {
+					int condition = flat.expression(node);
+					Literal conditionLiteral = evaluateExpression(flat, condition);
+					boolean isTrue = conditionLiteral instanceof BoolLiteral && ((BoolLiteral) conditionLiteral).value;
+					int elseClause = flat.elseClause(node);
+					if (isTrue) {
+						chosenFirst = condition >= 0 ? flat.end(condition) : elseClause;
+						chosenEnd = elseClause;
+					} else if (elseClause < flat.end(node)) {
+						chosenFirst = flat.firstChild(elseClause);
+						chosenEnd = flat.end(elseClause);
+					} else {
+						chosenFirst = chosenEnd = flat.end(node);
+					}
+					scopes.pushScope();
+					return true;
+				}
+				case FlatAST.VARIABLE_ASSIGNMENT:
+					scopes.assign(flat.variableId(flat.firstChild(node)), evaluateExpression(flat, flat.expression(node)));
+					return false;
+				case FlatAST.DECLARATION: {
+					int expression = flat.expression(node);
+					builder.append(INDENT.repeat(indentLevel))
+							.append(flat.text(flat.firstChild(node)))
+							.append(": ");
+					// Een literal wordt direct uitgeschreven, zonder er eerst een Literal van te maken
+					if (expression >= 0 && FlatAST.isLiteral(flat.kind(expression))) {
+						byte kind = flat.kind(expression);
+						builder.append(literalText(kind, flat.intValue(expression), kind == FlatAST.COLOR_LITERAL ? flat.text(expression) : null));
+					} else {
+						builder.append(evaluateExpression(flat, expression).accept(CSS_TEXT, null));
+					}
+					builder.append(";\n");
+					return false;
+				}
+				default:
+					return false;
+			}
 		}
-		if (literal instanceof ScalarLiteral) {
-			return Integer.toString(((ScalarLiteral) literal).value);
+
+		@Override
+		public int firstChild(FlatAST flat, int node) {
+			switch (flat.kind(node)) {
+				case FlatAST.STYLERULE: return flat.ruleBody(node);
+				case FlatAST.IF_CLAUSE: return chosenFirst;
+				default: return flat.firstChild(node);
+			}
 		}
-		if (literal instanceof ColorLiteral) {
-			return ((ColorLiteral) literal).value;
+
+		@Override
+		public int childrenEnd(FlatAST flat, int node) {
+			return flat.kind(node) == FlatAST.IF_CLAUSE ? chosenEnd : flat.end(node);
 		}
-		if (literal instanceof BoolLiteral) {
-			// In CSS komt een boolean normaliter niet voor.
-			return ((BoolLiteral) literal).value ? "TRUE" : "FALSE";
+
+		@Override
+		public void exit(FlatAST flat, int node) {
+			if (flat.kind(node) == FlatAST.STYLERULE) {
+				indentLevel--;
+				scopes.popScope();
+				builder.append("}");
+			} else if (flat.kind(node) == FlatAST.IF_CLAUSE) {
+				scopes.popScope();
+			}
+		}
+
+		private void openStylerule(FlatAST flat, int stylerule) {
+			if (builder.length() > 0) {
+				builder.append("\n\n");
+			}
+
+			// Selectors staan vooraan, daarna volgt de body.
+			for (int child = flat.firstChild(stylerule); child < flat.ruleBody(stylerule); child = flat.end(child)) {
+				if (child > flat.firstChild(stylerule)) {
+					builder.append(", ");
+				}
+				builder.append(flat.text(child));
+			}
+			builder.append(" {\n");
+
+			scopes.pushScope();
+			indentLevel++;
 		}
-		// Reserve fallback.
-		return literal.toString();
+	}
+
+	// Rekent de expressie op positie node uit; 0 (scalar) als node -1 is.
+	private Literal evaluateExpression(FlatAST flat, int node) {
+		return values.evaluate(flat, node, scopes);
 	}
 
 	// -------------------------
-	// Expressie-evaluatie
+	// Helpers: selectors en literals naar CSS-tekst
 	// -------------------------
-	private Literal evaluateExpression(Expression expression, Deque<Map<String, Literal>> scopes) {
-		// Null-veiligheid: behandel als 0 (scalar).
-		if (expression == null) {
-			return new ScalarLiteral(0);
+
+	// CSS-tekst van een literal, gegeven zijn soort (zie FlatAST) en waarde; color is alleen voor een kleur
+	private static String literalText(byte kind, int value, String color) {
+		switch (kind) {
+			case FlatAST.PIXEL_LITERAL: return value + "px";
+			case FlatAST.PERCENTAGE_LITERAL: return value + "%";
+			case FlatAST.COLOR_LITERAL: return color;
+			// In CSS komt een boolean normaliter niet voor.
+			case FlatAST.BOOL_LITERAL: return value != 0 ? "TRUE" : "FALSE";
+			default: return Integer.toString(value);
 		}
+	}
+
+	private static class CssText implements ASTVisitor<String, Void> {
 
-		// Literals zijn al eindresultaten.
-		if (expression instanceof Literal) {
-			return (Literal) expression;
+		@Override
+		public String visitPixelLiteral(PixelLiteral literal, Void context) {
+			return literalText(FlatAST.PIXEL_LITERAL, literal.value, null);
 		}
 
-		// Variabele-referentie: zoek van boven (huidige scope) naar beneden (globale scope).
-		if (expression instanceof VariableReference) {
-			String name = ((VariableReference) expression).name;
-			for (Map<String, Literal> scope : scopes) {
-				if (scope.containsKey(name)) {
-					return scope.get(name);
-				}
-			}
-			// Niet gevonden → veilig fallback 0.
-			return new ScalarLiteral(0);
+		@Override
+		public String visitPercentageLiteral(PercentageLiteral literal, Void context) {
+			return literalText(FlatAST.PERCENTAGE_LITERAL, literal.value, null);
 		}
 
-		// Optellen
-		if (expression instanceof AddOperation) {
-			AddOperation add = (AddOperation) expression;
-			Literal left = evaluateExpression(add.lhs, scopes);
-			Literal right = evaluateExpression(add.rhs, scopes);
-			return computeOperation(left, right, "+");
+		@Override
+		public String visitScalarLiteral(ScalarLiteral literal, Void context) {
+			return literalText(FlatAST.SCALAR_LITERAL, literal.value, null);
 		}
 
-		// Aftrekken
-		if (expression instanceof SubtractOperation) {
-			SubtractOperation sub = (SubtractOperation) expression;
-			Literal left = evaluateExpression(sub.lhs, scopes);
-			Literal right = evaluateExpression(sub.rhs, scopes);
-			return computeOperation(left, right, "-");
+		@Override
+		public String visitColorLiteral(ColorLiteral literal, Void context) {
+			return literalText(FlatAST.COLOR_LITERAL, 0, literal.value);
 		}
 
-		// Vermenigvuldigen
-		if (expression instanceof MultiplyOperation) {
-			MultiplyOperation mul = (MultiplyOperation) expression;
-			Literal left = evaluateExpression(mul.lhs, scopes);
-			Literal right = evaluateExpression(mul.rhs, scopes);
-			return computeOperation(left, right, "*");
+		@Override
+		public String visitBoolLiteral(BoolLiteral literal, Void context) {
+			return literalText(FlatAST.BOOL_LITERAL, literal.value ? 1 : 0, null);
 		}
 
-		// Onbekend type → 0.
-		return new ScalarLiteral(0);
-	}
+		@Override
+		public String visitClassSelector(ClassSelector selector, Void context) {
+			return selector.toString();
+		}
 
-	// -------------------------
-	// Rekenregels voor literals
-	// -------------------------
-	private Literal computeOperation(Literal left, Literal right, String operator) {
-		// px ± px
-		if (left instanceof PixelLiteral && right instanceof PixelLiteral) {
-			int leftValue = ((PixelLiteral) left).value;
-			int rightValue = ((PixelLiteral) right).value;
-			if (operator.equals("+")) {
-				return new PixelLiteral(leftValue + rightValue);
-			}
-			if (operator.equals("-")) {
-				return new PixelLiteral(leftValue - rightValue);
-			}
+		@Override
+		public String visitIdSelector(IdSelector selector, Void context) {
+			return selector.toString();
 		}
 
-		// % * scalar  (of  scalar * %)
-		if (left instanceof PercentageLiteral && right instanceof ScalarLiteral && operator.equals("*")) {
-			int result = ((PercentageLiteral) left).value * ((ScalarLiteral) right).value;
-			return new PercentageLiteral(result);
+		@Override
+		public String visitTagSelector(TagSelector selector, Void context) {
+			return selector.toString();
 		}
-		if (left instanceof ScalarLiteral && right instanceof PercentageLiteral && operator.equals("*")) {
-			int result = ((ScalarLiteral) left).value * ((PercentageLiteral) right).value;
-			return new PercentageLiteral(result);
+
+		// Overige knopen hebben geen CSS-tekst: gebruik het label.
+		@Override
+		public String visitStylesheet(Stylesheet node, Void context) {
+			return node.getNodeLabel();
 		}
 
-		// px * scalar  (of  scalar * px)
-		if (left instanceof PixelLiteral && right instanceof ScalarLiteral && operator.equals("*")) {
-			int result = ((PixelLiteral) left).value * ((ScalarLiteral) right).value;
-			return new PixelLiteral(result);
+		@Override
+		public String visitStylerule(Stylerule node, Void context) {
+			return node.getNodeLabel();
 		}
-		if (left instanceof ScalarLiteral && right instanceof PixelLiteral && operator.equals("*")) {
-			int result = ((ScalarLiteral) left).value * ((PixelLiteral) right).value;
-			return new PixelLiteral(result);
+
+		@Override
+		public String visitDeclaration(Declaration node, Void context) {
+			return node.getNodeLabel();
 		}
 
-		// scalar +/-/* scalar
-		if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
-			int leftValue = ((ScalarLiteral) left).value;
-			int rightValue = ((ScalarLiteral) right).value;
-			switch (operator) {
-				case "+":
-					return new ScalarLiteral(leftValue + rightValue);
-				case "-":
-					return new ScalarLiteral(leftValue - rightValue);
-				case "*":
-					return new ScalarLiteral(leftValue * rightValue);
-			}
+		@Override
+		public String visitPropertyName(PropertyName node, Void context) {
+			return node.getNodeLabel();
 		}
 
-		// % +/- %
-		if (left instanceof PercentageLiteral && right instanceof PercentageLiteral && operator.equals("+")) {
-			int result = ((PercentageLiteral) left).value + ((PercentageLiteral) right).value;
-			return new PercentageLiteral(result);
+		@Override
+		public String visitVariableAssignment(VariableAssignment node, Void context) {
+			return node.getNodeLabel();
 		}
-		if (left instanceof PercentageLiteral && right instanceof PercentageLiteral && operator.equals("-")) {
-			int result = ((PercentageLiteral) left).value - ((PercentageLiteral) right).value;
-			return new PercentageLiteral(result);
+
+		@Override
+		public String visitVariableReference(VariableReference node, Void context) {
+			return node.getNodeLabel();
 		}
 
-		// Fallback: ongeldig type → 0.
-		return new ScalarLiteral(0);
-	}
+		@Override
+		public String visitIfClause(IfClause node, Void context) {
+			return node.getNodeLabel();
+		}
 
-	// -------------------------
-	// Variabelen toekennen aan scopes
-	// -------------------------
-	private void assignVariable(Deque<Map<String, Literal>> scopes, String name, Literal value) {
-		// Werk de dichtstbijzijnde scope bij waar de variabele reeds bestaat...
-		for (Map<String, Literal> scope : scopes) {
-			if (scope.containsKey(name)) {
-				scope.put(name, value);
-				return;
-			}
+		@Override
+		public String visitElseClause(ElseClause node, Void context) {
+			return node.getNodeLabel();
+		}
+
+		@Override
+		public String visitAddOperation(AddOperation node, Void context) {
+			return node.getNodeLabel();
+		}
+
+		@Override
+		public String visitSubtractOperation(SubtractOperation node, Void context) {
+			return node.getNodeLabel();
 		}
-		// ...of anders: definieer in de huidige (peek) scope.
-		if (!scopes.isEmpty()) {
-			scopes.peek().put(name, value);
+
+		@Override
+		public String visitMultiplyOperation(MultiplyOperation node, Void context) {
+			return node.getNodeLabel();
 		}
 	}
 }
@@ -6,8 +6,11 @@ import javafx.scene.control.TreeCell;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.layout.BorderPane;
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
 import nl.han.ica.icss.ast.AST;
 import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Traversal;
 
 public class ASTPane extends BorderPane {
 
@@ -51,13 +54,24 @@ public class ASTPane extends BorderPane {
         content.setRoot(astNodeToTreeItem(ast.root));
     }
     private TreeItem<ASTNode> astNodeToTreeItem(ASTNode astNode) {
+        // Zonder recursie: de open TreeItems staan op een eigen stack, onder een tijdelijke wortel
+        IHANStack<TreeItem<ASTNode>> parents = new HANStack<>();
+        parents.push(new TreeItem<ASTNode>(null));
+        new Traversal().walk(astNode, new Traversal.Walker() {
+            @Override
+            public boolean enter(ASTNode node) {
+                TreeItem<ASTNode> tvNode = new TreeItem<ASTNode>(node);
+                tvNode.setExpanded(true);
+                parents.peek().getChildren().add(tvNode);
+                parents.push(tvNode);
+                return true;
+            }
 
-        TreeItem<ASTNode> tvNode = new TreeItem<ASTNode>(astNode);
-        tvNode.setExpanded(true);
-
-        for(ASTNode child : astNode.getChildren()) {
-            tvNode.getChildren().add(astNodeToTreeItem(child));
-        }
-        return tvNode;
+            @Override
+            public void exit(ASTNode node) {
+                parents.pop();
+            }
+        });
+        return parents.peek().getChildren().get(0);
     }
 }
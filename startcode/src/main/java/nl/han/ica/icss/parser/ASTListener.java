@@ -10,22 +10,48 @@ import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
 /**
- * Deze class maakt een AST van ICSS aan op basis van de Antlr Parse Tree.
+ * Deze class maakt een AST van ICSS aan tijdens het parsen.
+ *
+ * De listener bouwt de AST alleen uit enter/exit events en tokens, en leest nooit de
+ * kinderen van een context uit. Daardoor werkt hij zowel met een ParseTreeWalker over een
+ * volledige parse tree, als als parse listener ({@code parser.addParseListener}) met
+ * {@code setBuildParseTree(false)}, zodat er geen parse tree in het geheugen hoeft te staan.
+ * Literals worden direct op basis van het tokentype aangemaakt.
  */
 public class ASTListener extends ICSSBaseListener {
 
+	// Markeert het begin van een additionExpr/multiplicationExpr op de operatorstack
+	private static final int SENTINEL = Token.INVALID_TYPE;
+
 	//========================
 	// ATTRIBUTES
 	//========================
 	private AST ast; // Root AST
 	private IHANStack<ASTNode> currentContainer; // Houdt parent nodes bij
+	private IHANStack<Expression> operands; // Operanden van de expressie die nu geparsed wordt
+	private IHANStack<Integer> operators; // Openstaande operatoren (tokentypes) per expressieniveau
+	private final VariableIds variableIds; // Ids van de variabelenamen, zie VariableReference
 
 	public ASTListener() {
+		this(new VariableIds());
+	}
+
+	/**
+	 * @param variableIds tabel voor de ids van de variabelen; wordt door alle delen van dezelfde
+	 * stylesheet gedeeld, zodat gelijke namen overal hetzelfde id hebben
+	 */
+	public ASTListener(VariableIds variableIds) {
+		this.variableIds = variableIds;
 		ast = new AST();
 		currentContainer = new HANStack<>();
 		currentContainer.push(ast.root); // root is Stylesheet
+		operands = new HANStack<>();
+		operators = new HANStack<>();
 	}
 
 	public AST getAST() {
@@ -33,37 +59,107 @@ public class ASTListener extends ICSSBaseListener {
 	}
 
 	//========================
-	// VARIABLE ASSIGNMENT
+	// TOKENS
 	//========================
 	@Override
-	public void enterVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
-		// Nieuwe VariableAssignment node
-		VariableAssignment varAssign = new VariableAssignment();
+	public void visitTerminal(TerminalNode node) {
+		Token token = node.getSymbol();
+		int rule = ((ParserRuleContext) node.getParent()).getRuleIndex();
+
+		switch (rule) {
+			case ICSSParser.RULE_variableAssignment:
+				// Naam van de variabele
+				if (token.getType() == ICSSParser.VARIABLE_IDENT) {
+					currentContainer.peek().addChild(new VariableReference(token.getText(), variableIds));
+				}
+				break;
+			case ICSSParser.RULE_selector:
+				currentContainer.peek().addChild(createSelector(token));
+				break;
+			case ICSSParser.RULE_propertyName:
+				currentContainer.peek().addChild(new PropertyName(token.getText()));
+				break;
+			case ICSSParser.RULE_additionExpr:
+			case ICSSParser.RULE_multiplicationExpr:
+				// PLUS, MIN of MUL: wordt verwerkt zodra de rechteroperand klaar is
+				operators.push(token.getType());
+				break;
+			case ICSSParser.RULE_primaryExpr:
+				Expression literal = createPrimary(token);
+				if (literal != null) operands.push(literal);
+				break;
+			case ICSSParser.RULE_ifStatement:
+				if (token.getType() == ICSSParser.ELSE) {
+					ElseClause elseNode = new ElseClause();
+					// voeg ElseClause toe als child van de IfClause en maak hem de nieuwe container
+					currentContainer.peek().addChild(elseNode);
+					currentContainer.push(elseNode);
+				}
+				break;
+			default:
+				// Haakjes, puntkomma's e.d. leveren geen knoop op
+				break;
+		}
+	}
+
+	private Selector createSelector(Token token) {
+		switch (token.getType()) {
+			case ICSSParser.ID_IDENT:
+				return new IdSelector(token.getText());
+			case ICSSParser.CLASS_IDENT:
+				return new ClassSelector(token.getText());
+			default:
+				return new TagSelector(token.getText());
+		}
+	}
 
-		// Voeg VariableReference toe (naam variabele)
-		VariableReference name = new VariableReference(ctx.VARIABLE_IDENT().getText());
-		varAssign.addChild(name);
-
-		// Voeg Expression toe
-		Expression expr = null;
-		String exprText = ctx.expression().getText();
-
-		if (exprText.matches("#[0-9a-fA-F]{6}")) {
-			expr = new ColorLiteral(exprText);
-		} else if (exprText.endsWith("px")) {
-			expr = new PixelLiteral(exprText);
-		} else if (exprText.endsWith("%")) {
-			expr = new PercentageLiteral(exprText);
-		} else if (exprText.matches("[0-9]+")) {
-			expr = new ScalarLiteral(exprText);
-		} else if (exprText.equals("TRUE") || exprText.equals("FALSE")) {
-			expr = new BoolLiteral(exprText);
-		} else {
-			expr = new VariableReference(exprText);
+	private Expression createPrimary(Token token) {
+		switch (token.getType()) {
+			case ICSSParser.PIXELSIZE:
+				return new PixelLiteral(parseDigits(token.getText()));
+			case ICSSParser.PERCENTAGE:
+				return new PercentageLiteral(parseDigits(token.getText()));
+			case ICSSParser.SCALAR:
+				return new ScalarLiteral(parseDigits(token.getText()));
+			case ICSSParser.COLOR:
+				return new ColorLiteral(token.getText());
+			case ICSSParser.TRUE:
+				return new BoolLiteral(true);
+			case ICSSParser.FALSE:
+				return new BoolLiteral(false);
+			case ICSSParser.VARIABLE_IDENT:
+			case ICSSParser.LOWER_IDENT:
+				return new VariableReference(token.getText(), variableIds);
+			default:
+				return null; // '(' en ')'
 		}
+	}
 
-		varAssign.addChild(expr);
+	// Leest de cijfers aan het begin van een PIXELSIZE, PERCENTAGE of SCALAR token
+	private static int parseDigits(String text) {
+		int value = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') break;
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	//========================
+	// VARIABLE ASSIGNMENT
+	//========================
+	@Override
+	public void enterVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
+		// Nieuwe VariableAssignment node, naam en expressie volgen via de tokens
+		VariableAssignment varAssign = new VariableAssignment();
 		currentContainer.peek().addChild(varAssign);
+		currentContainer.push(varAssign);
+	}
+
+	@Override
+	public void exitVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
+		currentContainer.pop();
 	}
 
 	//========================
@@ -71,25 +167,9 @@ public class ASTListener extends ICSSBaseListener {
 	//========================
 	@Override
 	public void enterRuleset(ICSSParser.RulesetContext ctx) {
-		// Nieuwe Stylerule
+		// Nieuwe Stylerule, de selector volgt via de tokens
 		Stylerule stylerule = new Stylerule();
 
-		// Voeg selector toe
-		if (ctx.selector() != null) {
-			String selText = ctx.selector().getText();
-			Selector selectorNode;
-
-			if (selText.startsWith("#")) {
-				selectorNode = new IdSelector(selText);
-			} else if (selText.startsWith(".")) {
-				selectorNode = new ClassSelector(selText);
-			} else {
-				selectorNode = new TagSelector(selText);
-			}
-
-			stylerule.addChild(selectorNode);
-		}
-
 		// Voeg Stylerule toe aan parent
 		currentContainer.peek().addChild(stylerule);
 
@@ -108,131 +188,99 @@ public class ASTListener extends ICSSBaseListener {
 	//========================
 	@Override
 	public void enterDeclaration(ICSSParser.DeclarationContext ctx) {
-		Declaration decl = new Declaration(ctx.propertyName().getText());
-
-		Expression exprNode = null;
-		if (ctx.expression() != null && ctx.expression().additionExpr() != null) {
-			exprNode = parseAdditionExpr(ctx.expression().additionExpr());
-		}
-		if (exprNode != null) decl.addChild(exprNode);
-
-		// Voeg toe aan de juiste parent
-		ASTNode parent = currentContainer.peek();
-		if (parent instanceof ElseClause || parent instanceof IfClause || parent instanceof Stylerule) {
-			parent.addChild(decl);
-		}
+		Declaration decl = new Declaration();
+		currentContainer.peek().addChild(decl);
+		currentContainer.push(decl);
 	}
 
+	@Override
+	public void exitDeclaration(ICSSParser.DeclarationContext ctx) {
+		currentContainer.pop();
+	}
 
 	//========================
 	// EXPRESSIONS
 	//========================
 	@Override
-	public void enterAdditionExpr(ICSSParser.AdditionExprContext ctx) {
-		Expression expr = parseAdditionExpr(ctx);
-		// expr wordt toegevoegd via Declaration, dus hier niets
-	}
-
-	private Expression parseAdditionExpr(ICSSParser.AdditionExprContext ctx) {
-		Expression left = parseMultiplicationExpr(ctx.multiplicationExpr(0));
-
-		for (int i = 1; i < ctx.multiplicationExpr().size(); i++) {
-			ICSSParser.MultiplicationExprContext rightCtx = ctx.multiplicationExpr(i);
-			if (ctx.PLUS(i-1) != null) {
-				AddOperation add = new AddOperation();
-				add.addChild(left);
-				add.addChild(parseMultiplicationExpr(rightCtx));
-				left = add;
-			} else if (ctx.MIN(i-1) != null) {
-				SubtractOperation sub = new SubtractOperation();
-				sub.addChild(left);
-				sub.addChild(parseMultiplicationExpr(rightCtx));
-				left = sub;
-			}
+	public void exitExpression(ICSSParser.ExpressionContext ctx) {
+		// De volledige expressie hoort bij de huidige container:
+		// VariableAssignment, Declaration of de conditie van een IfClause
+		if (!operands.isEmpty()) {
+			currentContainer.peek().addChild(operands.pop());
 		}
-
-		return left;
 	}
 
-	private Expression parseMultiplicationExpr(ICSSParser.MultiplicationExprContext ctx) {
-		Expression left = parsePrimaryExpr(ctx.primaryExpr(0));
-
-		for (int i = 1; i < ctx.primaryExpr().size(); i++) {
-			MultiplyOperation mul = new MultiplyOperation();
-			mul.addChild(left);
-			mul.addChild(parsePrimaryExpr(ctx.primaryExpr(i)));
-			left = mul;
-		}
-
-		return left;
+	@Override
+	public void enterAdditionExpr(ICSSParser.AdditionExprContext ctx) {
+		operators.push(SENTINEL);
 	}
 
-	private Expression parsePrimaryExpr(ICSSParser.PrimaryExprContext ctx) {
-		if (ctx.PIXELSIZE() != null) return new PixelLiteral(ctx.PIXELSIZE().getText());
-		if (ctx.PERCENTAGE() != null) return new PercentageLiteral(ctx.PERCENTAGE().getText());
-		if (ctx.SCALAR() != null) return new ScalarLiteral(ctx.SCALAR().getText());
-		if (ctx.COLOR() != null) return new ColorLiteral(ctx.COLOR().getText());
-		if (ctx.VARIABLE_IDENT() != null) return new VariableReference(ctx.VARIABLE_IDENT().getText());
-		if (ctx.TRUE() != null || ctx.FALSE() != null) return new BoolLiteral(ctx.getText());
-		if (ctx.additionExpr() != null) return parseAdditionExpr(ctx.additionExpr());
-		return null;
+	@Override
+	public void exitAdditionExpr(ICSSParser.AdditionExprContext ctx) {
+		popLevel();
 	}
 
-
 	@Override
-	public void enterIfStatement(ICSSParser.IfStatementContext ctx) {
-		Expression condition = parseAdditionExpr(ctx.expression().additionExpr());
-		IfClause ifNode = new IfClause();
-		ifNode.addChild(condition);
-		currentContainer.peek().addChild(ifNode);
-		currentContainer.push(ifNode);
+	public void enterMultiplicationExpr(ICSSParser.MultiplicationExprContext ctx) {
+		operators.push(SENTINEL);
 	}
 
 	@Override
-	public void exitIfStatement(ICSSParser.IfStatementContext ctx) {
-		// Pop tot en met de IfClause
-		while (!(currentContainer.peek() instanceof IfClause)) {
-			currentContainer.pop();
+	public void exitMultiplicationExpr(ICSSParser.MultiplicationExprContext ctx) {
+		popLevel();
+
+		// Rechteroperand van een openstaande + of - is compleet: links-associatief samenvoegen
+		if (!operators.isEmpty() && operators.peek() != SENTINEL) {
+			int operator = operators.pop();
+			reduce(operator == ICSSParser.PLUS ? new AddOperation() : new SubtractOperation());
 		}
-		currentContainer.pop(); // Pop de IfClause zelf
 	}
 
-
-
-
-
-	// ELSE-block wordt pas gepushed als we statements binnen else tegenkomen
 	@Override
-	public void enterStatement(ICSSParser.StatementContext ctx) {
-		// Controleer of dit statement deel uitmaakt van een IF-statement
-		if (ctx.getParent() instanceof ICSSParser.IfStatementContext) {
-			ICSSParser.IfStatementContext ifCtx = (ICSSParser.IfStatementContext) ctx.getParent();
-
-			// Als er een ELSE aanwezig is, bepaal dan of deze statement ná de ELSE staat
-			if (ifCtx.ELSE() != null) {
-				int stmtTokenIndex = ctx.getStart().getTokenIndex();
-				int elseTokenIndex = ifCtx.ELSE().getSymbol().getTokenIndex();
-
-				// Alleen pushen als we daadwerkelijk in het ELSE-gedeelte binnenkomen
-				if (stmtTokenIndex > elseTokenIndex && currentContainer.peek() instanceof IfClause) {
-					ElseClause elseNode = new ElseClause();
-					// voeg ElseClause toe als child van de IfClause
-					((IfClause) currentContainer.peek()).addChild(elseNode);
-					// push de ElseClause zodat volgende statements erin terechtkomen
-					currentContainer.push(elseNode);
-				}
-			}
+	public void exitPrimaryExpr(ICSSParser.PrimaryExprContext ctx) {
+		// Rechteroperand van een openstaande * is compleet
+		if (!operators.isEmpty() && operators.peek() == ICSSParser.MUL) {
+			operators.pop();
+			reduce(new MultiplyOperation());
 		}
-		// anders: geen aanpassing (andere statements worden normaal toegevoegd door uw listener)
 	}
 
+	// Verwijdert de operatoren van het huidige niveau, inclusief de SENTINEL
+	private void popLevel() {
+		while (!operators.isEmpty() && operators.pop() != SENTINEL) {
+			// Alleen bij syntaxfouten blijven hier operatoren over
+		}
+	}
 
+	// Vervangt de bovenste twee operanden door de operatie
+	private void reduce(Operation operation) {
+		if (operands.isEmpty()) return; // Alleen mogelijk bij syntaxfouten
+		Expression rhs = operands.pop();
+		if (operands.isEmpty()) {
+			operands.push(rhs);
+			return;
+		}
+		operation.addChild(operands.pop());
+		operation.addChild(rhs);
+		operands.push(operation);
+	}
 
+	//========================
+	// IF / ELSE
+	//========================
 	@Override
-	public void exitStatement(ICSSParser.StatementContext ctx) {
-		// Pop ElseClause aan het einde van het else-block
+	public void enterIfStatement(ICSSParser.IfStatementContext ctx) {
+		// De conditie volgt via exitExpression, de ElseClause via het ELSE token
+		IfClause ifNode = new IfClause();
+		currentContainer.peek().addChild(ifNode);
+		currentContainer.push(ifNode);
+	}
+
+	@Override
+	public void exitIfStatement(ICSSParser.IfStatementContext ctx) {
 		if (currentContainer.peek() instanceof ElseClause) {
-			currentContainer.pop();
+			currentContainer.pop(); // Pop de ElseClause
 		}
+		currentContainer.pop(); // Pop de IfClause zelf
 	}
 }
@@ -0,0 +1,243 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Beheert de DFA caches van ICSSLexer en ICSSParser.
+ *
+ * Antlr bewaart per beslissing in de grammatica een DFA met alle voorspellingen die al eens
+ * zijn uitgerekend. Die DFA's zijn static, dus gedeeld door alle lexers en parsers in het
+ * proces, en groeien alleen maar. Deze class maakt de grootte zichtbaar (aantal states per
+ * beslissing) en kan de caches leegmaken zodra ze boven een ingestelde grens komen.
+ *
+ * Leegmaken mag niet tijdens het parsen: parsers lezen de DFA's zonder lock. Daarom houdt
+ * elke parse een read lock vast ({@link #beginParse()} en {@link #endParse()}) en maakt
+ * {@link #clear()} de caches alleen leeg met de write lock. De grens wordt dus tussen parses
+ * bewaakt: tijdens één grote parse kunnen de caches er nog boven komen.
+ */
+public final class DFACache {
+
+	// Bestanden waarmee de caches bij warmUp gevuld worden
+	private static final String[] WARM_UP_RESOURCES = {"level0.icss", "level1.icss", "level2.icss", "level3.icss"};
+
+	//========================
+	// ATTRIBUTES
+	//========================
+	private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private static volatile int maxStates = 0; // 0 is onbegrensd
+	private static volatile int clearCount = 0; // Aantal keer leeggemaakt
+
+	private DFACache() {
+	}
+
+	//========================
+	// PARSING
+	//========================
+
+	/**
+	 * Moet aangeroepen worden voordat er met ICSSLexer of ICSSParser gelexed of geparsed wordt.
+	 * Meerdere parses mogen tegelijk lopen.
+	 */
+	public static void beginParse() {
+		lock.readLock().lock();
+	}
+
+	/**
+	 * Moet aangeroepen worden als de parse van {@link #beginParse()} klaar is, ook na een exception.
+	 */
+	public static void endParse() {
+		lock.readLock().unlock();
+	}
+
+	//========================
+	// SIZE
+	//========================
+
+	/**
+	 * @return aantal DFA states per beslissing van ICSSParser, geïndexeerd op beslissingsnummer
+	 */
+	public static int[] getParserStateCounts() {
+		return stateCounts(ICSSParser._decisionToDFA);
+	}
+
+	/**
+	 * @return aantal DFA states per lexer mode van ICSSLexer
+	 */
+	public static int[] getLexerStateCounts() {
+		// De lexer gebruikt alleen de DFA's van zijn modes, de rest blijft leeg
+		int[] counts = stateCounts(ICSSLexer._decisionToDFA);
+		return Arrays.copyOf(counts, Math.min(counts.length, ICSSLexer.modeNames.length));
+	}
+
+	/**
+	 * @return totaal aantal DFA states van lexer en parser samen
+	 */
+	public static int getStateCount() {
+		return sum(getParserStateCounts()) + sum(getLexerStateCounts());
+	}
+
+	/**
+	 * @return hoe vaak de caches leeggemaakt zijn, door {@link #clear()} of door de grens
+	 */
+	public static int getClearCount() {
+		return clearCount;
+	}
+
+	/**
+	 * Beschrijft de grootte van de caches, één regel per beslissing.
+	 * @return leesbaar rapport
+	 */
+	public static String report() {
+		StringBuilder report = new StringBuilder();
+		int[] parserCounts = getParserStateCounts();
+		int[] lexerCounts = getLexerStateCounts();
+		report.append("DFA cache: ").append(sum(parserCounts) + sum(lexerCounts)).append(" states");
+		if (maxStates > 0) {
+			report.append(" (max ").append(maxStates).append(')');
+		}
+		report.append(", cleared ").append(clearCount).append(" times\n");
+
+		ATN atn = ICSSParser._ATN;
+		for (int decision = 0; decision < parserCounts.length; decision++) {
+			String rule = ICSSParser.ruleNames[atn.getDecisionState(decision).ruleIndex];
+			report.append("  parser decision ").append(decision).append(" (").append(rule).append("): ")
+					.append(parserCounts[decision]).append(" states\n");
+		}
+		for (int mode = 0; mode < lexerCounts.length; mode++) {
+			report.append("  lexer mode ").append(ICSSLexer.modeNames[mode]).append(": ")
+					.append(lexerCounts[mode]).append(" states\n");
+		}
+		return report.toString();
+	}
+
+	private static int[] stateCounts(DFA[] decisionToDFA) {
+		int[] counts = new int[decisionToDFA.length];
+		for (int i = 0; i < decisionToDFA.length; i++) {
+			counts[i] = decisionToDFA[i].states.size();
+		}
+		return counts;
+	}
+
+	private static int sum(int[] values) {
+		int total = 0;
+		for (int value : values) {
+			total += value;
+		}
+		return total;
+	}
+
+	//========================
+	// BOUND
+	//========================
+
+	/**
+	 * Stelt het maximale aantal states van lexer en parser samen in. Wordt het overschreden, dan
+	 * maakt de eerstvolgende {@link #trim()} de caches leeg; de Pipeline doet dat na elke parse.
+	 * @param maxStates het maximum, of 0 voor onbegrensd
+	 */
+	public static void setMaxStates(int maxStates) {
+		if (maxStates < 0) {
+			throw new IllegalArgumentException("maxStates kan niet negatief zijn: " + maxStates);
+		}
+		DFACache.maxStates = maxStates;
+	}
+
+	public static int getMaxStates() {
+		return maxStates;
+	}
+
+	/**
+	 * Maakt de caches leeg als ze groter zijn dan de grens. Wacht niet: loopt er nog een parse,
+	 * dan gebeurt er niets en probeert de volgende trim het opnieuw. Mag niet aangeroepen worden
+	 * tussen {@link #beginParse()} en {@link #endParse()}.
+	 * @return true als de caches leeggemaakt zijn
+	 */
+	public static boolean trim() {
+		int max = maxStates;
+		if (max == 0 || getStateCount() <= max || !lock.writeLock().tryLock()) {
+			return false;
+		}
+		try {
+			clearLocked();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		return true;
+	}
+
+	/**
+	 * Vervangt alle DFA's door lege. Wacht tot lopende parses klaar zijn. Mag niet aangeroepen
+	 * worden tussen {@link #beginParse()} en {@link #endParse()}.
+	 */
+	public static void clear() {
+		lock.writeLock().lock();
+		try {
+			clearLocked();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Alleen met de write lock
+	private static void clearLocked() {
+		clear(ICSSParser._decisionToDFA, ICSSParser._ATN);
+		clear(ICSSLexer._decisionToDFA, ICSSLexer._ATN);
+		clearCount++;
+	}
+
+	// Hetzelfde als ATNSimulator.clearDFA, maar zonder lexer of parser instantie
+	private static void clear(DFA[] decisionToDFA, ATN atn) {
+		for (int decision = 0; decision < decisionToDFA.length; decision++) {
+			decisionToDFA[decision] = new DFA(atn.getDecisionState(decision), decision);
+		}
+	}
+
+	//========================
+	// WARM UP
+	//========================
+
+	/**
+	 * Vult de caches door de meegeleverde voorbeelden level0 t/m level3 te parsen, met SLL en
+	 * met LL voorspelling, zodat de eerste echte parse niet alles via de ATN hoeft uit te rekenen.
+	 */
+	public static void warmUp() {
+		ClassLoader classLoader = DFACache.class.getClassLoader();
+		for (String resource : WARM_UP_RESOURCES) {
+			try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+				if (inputStream == null) {
+					continue;
+				}
+				String text = CharStreams.fromStream(inputStream).toString();
+				warmUp(text, PredictionMode.SLL);
+				warmUp(text, PredictionMode.LL);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static void warmUp(String text, PredictionMode predictionMode) {
+		beginParse();
+		try {
+			ICSSLexer lexer = new ICSSLexer(CharStreams.fromString(text));
+			lexer.removeErrorListeners();
+			ICSSParser parser = new ICSSParser(new CommonTokenStream(lexer));
+			parser.removeErrorListeners();
+			parser.setBuildParseTree(false);
+			parser.getInterpreter().setPredictionMode(predictionMode);
+			parser.stylesheet();
+		} finally {
+			endParse();
+		}
+	}
+}
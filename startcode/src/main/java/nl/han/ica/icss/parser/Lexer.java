@@ -1,10 +1,466 @@
 package nl.han.ica.icss.parser;
 
-import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class Lexer {
+/**
+ * Handgeschreven lexer voor ICSS, als snel alternatief voor de gegenereerde ICSSLexer.
+ *
+ * De lexer is een vaste DFA die precies dezelfde tokens oplevert als ICSS.g4: langste match
+ * wint, bij gelijke lengte wint de regel die eerder in de grammatica staat. Omdat de lexer
+ * TokenSource implementeert kan ICSSParser hem via een CommonTokenStream gewoon gebruiken.
+ *
+ * {@link #next()} scant het volgende token zonder iets te alloceren: type, positie en regel
+ * staan daarna in deze lexer zelf (één herbruikbaar, muteerbaar token). {@link #nextToken()}
+ * maakt daar een echt Token van, want een CommonTokenStream bewaart alle tokens en kan dus
+ * geen gedeeld token gebruiken. Tekst van identifiers, kleuren en getallen wordt
+ * ge-intern-d, zodat dezelfde naam maar één keer als String bestaat; vaste tokens gebruiken
+ * constante strings.
+ */
+public class Lexer implements TokenSource {
 
+	// Tekst van tokens met een vaste schrijfwijze, geïndexeerd op tokentype
+	private static final String[] FIXED_TEXT = new String[ICSSLexer.VOCABULARY.getMaxTokenType() + 1];
+
+	static {
+		for (int type = 1; type < FIXED_TEXT.length; type++) {
+			String literal = ICSSLexer.VOCABULARY.getLiteralName(type);
+			if (literal != null) {
+				FIXED_TEXT[type] = literal.substring(1, literal.length() - 1); // zonder quotes
+			}
+		}
+	}
+
+	//========================
+	// ATTRIBUTES
+	//========================
+	private final CharStream input;
+	private final Pair<TokenSource, CharStream> source;
+	private TokenFactory<?> factory = CommonTokenFactory.DEFAULT;
+	private final List<ANTLRErrorListener> errorListeners = new ArrayList<>();
+
+	// Positie in de invoer
+	private int line = 1;
+	private int charPositionInLine = 0;
+
+	// Het huidige token, gevuld door next()
+	private int type;
+	private int tokenStart;
+	private int tokenLine;
+	private int tokenCharPosition;
+	private String tokenText;
+
+	// Scratch buffer voor tokens met variabele tekst
+	private char[] buffer = new char[64];
+	private int length;
+
+	// Intern-tabel (open addressing) voor tokentekst
+	private String[] interned = new String[256];
+	private int internedCount = 0;
+
+	public Lexer(CharStream input) {
+		this.input = input;
+		this.source = new Pair<>(this, input);
+	}
+
+	public void addErrorListener(ANTLRErrorListener listener) {
+		errorListeners.add(listener);
+	}
+
+	public void removeErrorListeners() {
+		errorListeners.clear();
+	}
+
+	//========================
+	// TOKENSOURCE
+	//========================
+	@Override
+	public Token nextToken() {
+		next();
+		return factory.create(source, type, tokenText, Token.DEFAULT_CHANNEL,
+				tokenStart, getTokenStop(), tokenLine, tokenCharPosition);
+	}
+
+	@Override
+	public int getLine() {
+		return line;
+	}
+
+	public void setLine(int line) {
+		this.line = line;
+	}
+
+	@Override
+	public int getCharPositionInLine() {
+		return charPositionInLine;
+	}
+
+	public void setCharPositionInLine(int charPositionInLine) {
+		this.charPositionInLine = charPositionInLine;
+	}
+
+	@Override
+	public CharStream getInputStream() {
+		return input;
+	}
+
+	@Override
+	public String getSourceName() {
+		return input.getSourceName();
+	}
+
+	@Override
+	public void setTokenFactory(TokenFactory<?> factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public TokenFactory<?> getTokenFactory() {
+		return factory;
+	}
+
+	//========================
+	// HUIDIG TOKEN
+	//========================
+	public int getType() {
+		return type;
+	}
+
+	public int getTokenStart() {
+		return tokenStart;
+	}
+
+	public int getTokenStop() {
+		return input.index() - 1;
+	}
+
+	public int getTokenLine() {
+		return tokenLine;
+	}
+
+	public int getTokenCharPositionInLine() {
+		return tokenCharPosition;
+	}
+
+	/**
+	 * @return tekst van het huidige token, of null als die nog uit de invoer gelezen moet worden
+	 */
+	public String getTokenText() {
+		return tokenText;
+	}
+
+	//========================
+	// SCANNER
+	//========================
+
+	/**
+	 * Scant het volgende token. Whitespace wordt overgeslagen, ongeldige tekens worden
+	 * gemeld aan de error listeners en overgeslagen, net als bij ICSSLexer.
+	 * @return het tokentype, Token.EOF aan het einde van de invoer
+	 */
+	public int next() {
+		while (true) {
+			tokenStart = input.index();
+			tokenLine = line;
+			tokenCharPosition = charPositionInLine;
+			tokenText = null;
+
+			int c = input.LA(1);
+			switch (c) {
+				case IntStream.EOF:
+					tokenText = "<EOF>";
+					return type = Token.EOF;
+				case ' ':
+				case '\t':
+				case '\r':
+				case '\n':
+					skipWhitespace();
+					continue;
+				case '(':
+					return fixed(ICSSLexer.T__4);
+				case ')':
+					return fixed(ICSSLexer.T__5);
+				case '[':
+					return fixed(ICSSLexer.BOX_BRACKET_OPEN);
+				case ']':
+					return fixed(ICSSLexer.BOX_BRACKET_CLOSE);
+				case '{':
+					return fixed(ICSSLexer.OPEN_BRACE);
+				case '}':
+					return fixed(ICSSLexer.CLOSE_BRACE);
+				case ';':
+					return fixed(ICSSLexer.SEMICOLON);
+				case '+':
+					return fixed(ICSSLexer.PLUS);
+				case '-':
+					return fixed(ICSSLexer.MIN);
+				case '*':
+					return fixed(ICSSLexer.MUL);
+				case ':':
+					consume();
+					if (input.LA(1) == '=') {
+						consume();
+						return withText(ICSSLexer.ASSIGNMENT_OPERATOR);
+					}
+					return withText(ICSSLexer.COLON);
+				case '#':
+					if (hash()) return type;
+					continue;
+				case '.':
+					if (classIdent()) return type;
+					continue;
+				default:
+					if (c >= '0' && c <= '9') return number();
+					if (c >= 'A' && c <= 'Z') return upperIdent();
+					if (c >= 'a' && c <= 'z') return lowerIdent();
+
+					// Geen enkele regel past: teken melden en overslaan
+					consume();
+					recognitionError();
+			}
+		}
+	}
+
+	private void skipWhitespace() {
+		int c = input.LA(1);
+		while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+			consume();
+			c = input.LA(1);
+		}
+	}
+
+	private int fixed(int tokenType) {
+		consume();
+		return withText(tokenType);
+	}
+
+	private int withText(int tokenType) {
+		tokenText = FIXED_TEXT[tokenType];
+		return type = tokenType;
+	}
+
+	// PIXELSIZE, PERCENTAGE of SCALAR
+	private int number() {
+		length = 0;
+		while (isDigit(input.LA(1))) {
+			append(consume());
+		}
+		if (input.LA(1) == 'p' && input.LA(2) == 'x') {
+			append(consume());
+			append(consume());
+			type = ICSSLexer.PIXELSIZE;
+		} else if (input.LA(1) == '%') {
+			append(consume());
+			type = ICSSLexer.PERCENTAGE;
+		} else {
+			type = ICSSLexer.SCALAR;
+		}
+		tokenText = intern();
+		return type;
+	}
+
+	// COLOR of ID_IDENT, false bij een ongeldig teken na '#'
+	private boolean hash() {
+		length = 0;
+		append(consume());
+
+		boolean hex = true;
+		int c = input.LA(1);
+		while (isIdentPart(c)) {
+			if (length <= 6 && !isHexDigit(c)) hex = false;
+			append(consume());
+			c = input.LA(1);
+		}
+		if (length == 1) {
+			invalidAfterPrefix();
+			return false;
+		}
+		// Bij gelijke lengte wint COLOR, want die staat eerder in de grammatica
+		type = hex && length == 7 ? ICSSLexer.COLOR : ICSSLexer.ID_IDENT;
+		tokenText = intern();
+		return true;
+	}
+
+	// CLASS_IDENT, false bij een ongeldig teken na '.'
+	private boolean classIdent() {
+		length = 0;
+		append(consume());
+		while (isIdentPart(input.LA(1))) {
+			append(consume());
+		}
+		if (length == 1) {
+			invalidAfterPrefix();
+			return false;
+		}
+		type = ICSSLexer.CLASS_IDENT;
+		tokenText = intern();
+		return true;
+	}
+
+	// TRUE, FALSE, VARIABLE_IDENT of CAPITAL_IDENT
+	private int upperIdent() {
+		length = 0;
+		boolean underscore = false;
+		int c = input.LA(1);
+		while (isLetterOrDigit(c) || c == '_') {
+			if (c == '_') underscore = true;
+			append(consume());
+			c = input.LA(1);
+		}
+		if (underscore) {
+			// CAPITAL_IDENT is dan langer dan VARIABLE_IDENT
+			type = ICSSLexer.CAPITAL_IDENT;
+		} else if (matches("TRUE")) {
+			return withText(ICSSLexer.TRUE);
+		} else if (matches("FALSE")) {
+			return withText(ICSSLexer.FALSE);
+		} else {
+			type = ICSSLexer.VARIABLE_IDENT;
+		}
+		tokenText = intern();
+		return type;
+	}
+
+	// Keywords, property namen of LOWER_IDENT
+	private int lowerIdent() {
+		length = 0;
+		while (isIdentPart(input.LA(1))) {
+			append(consume());
+		}
+		switch (length) {
+			case 2:
+				if (matches("if")) return withText(ICSSLexer.IF);
+				break;
+			case 4:
+				if (matches("else")) return withText(ICSSLexer.ELSE);
+				break;
+			case 5:
+				if (matches("color")) return withText(ICSSLexer.T__0);
+				if (matches("width")) return withText(ICSSLexer.T__2);
+				break;
+			case 6:
+				if (matches("height")) return withText(ICSSLexer.T__3);
+				break;
+			case 16:
+				if (matches("background-color")) return withText(ICSSLexer.T__1);
+				break;
+			default:
+				break;
+		}
+		type = ICSSLexer.LOWER_IDENT;
+		tokenText = intern();
+		return type;
+	}
+
+	// Na '#' of '.' komt geen geldig teken: ICSSLexer slaat dat teken dan ook over
+	private void invalidAfterPrefix() {
+		if (input.LA(1) != IntStream.EOF) {
+			consume();
+		}
+		recognitionError();
+	}
+
+	private void recognitionError() {
+		String text = input.getText(Interval.of(tokenStart, input.index() - 1));
+		String message = "token recognition error at: '" + escape(text) + "'";
+		for (ANTLRErrorListener listener : errorListeners) {
+			listener.syntaxError(null, null, tokenLine, tokenCharPosition, message, null);
+		}
+	}
+
+	private static String escape(String text) {
+		return text.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+	}
+
+	//========================
+	// HELPERS
+	//========================
+	private int consume() {
+		int c = input.LA(1);
+		input.consume();
+		if (c == '\n') {
+			line++;
+			charPositionInLine = 0;
+		} else {
+			charPositionInLine++;
+		}
+		return c;
+	}
+
+	private void append(int c) {
+		if (length == buffer.length) {
+			char[] bigger = new char[buffer.length * 2];
+			System.arraycopy(buffer, 0, bigger, 0, length);
+			buffer = bigger;
+		}
+		buffer[length++] = (char) c;
+	}
+
+	private boolean matches(String keyword) {
+		if (keyword.length() != length) return false;
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] != keyword.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	// Zoekt de buffer op in de intern-tabel, maakt alleen een String aan voor nieuwe tekst
+	private String intern() {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		int mask = interned.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		String candidate;
+		while ((candidate = interned[slot]) != null) {
+			if (candidate.hashCode() == hash && matches(candidate)) {
+				return candidate;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		String text = new String(buffer, 0, length);
+		interned[slot] = text;
+		if (++internedCount * 2 > interned.length) {
+			rehash();
+		}
+		return text;
+	}
+
+	private void rehash() {
+		String[] old = interned;
+		interned = new String[old.length * 2];
+		int mask = interned.length - 1;
+		for (String text : old) {
+			if (text == null) continue;
+			int hash = text.hashCode();
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (interned[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			interned[slot] = text;
+		}
+	}
+
+	private static boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isHexDigit(int c) {
+		return isDigit(c) || (c >= 'a' && c <= 'f');
+	}
+
+	// [a-z0-9\-], zoals in ID_IDENT, CLASS_IDENT en LOWER_IDENT
+	private static boolean isIdentPart(int c) {
+		return (c >= 'a' && c <= 'z') || isDigit(c) || c == '-';
+	}
+
+	private static boolean isLetterOrDigit(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c);
+	}
 }
@@ -0,0 +1,194 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Een CharStream die direct op de bytes van de invoer werkt, één byte per teken (Latin-1).
+ * De ICSS-grammatica bestaat alleen uit ASCII, dus er is geen decodering nodig. Bestanden
+ * worden gememory-mapt, zodat de lexer rechtstreeks uit de page cache leest en de invoer
+ * niet als String of code-point buffer op de heap hoeft te staan.
+ *
+ * De stream is ook een CharSequence, zodat de tekst gescand kan worden (bijvoorbeeld door
+ * {@link TopLevelScanner}) zonder hem te kopiëren.
+ *
+ * Let op: bytes buiten ASCII worden als losse Latin-1 tekens gezien. Een UTF-8 teken van
+ * meerdere bytes levert dus meerdere (ongeldige) tekens op voor de lexer.
+ */
+public class MappedCharStream implements CharStream, CharSequence {
+
+	//========================
+	// ATTRIBUTES
+	//========================
+	private final ByteBuffer buffer; // Invoer, positie 0 t/m limit
+	private final int size;
+	private final String sourceName;
+	private int index = 0;
+
+	public MappedCharStream(ByteBuffer buffer, String sourceName) {
+		this.buffer = buffer;
+		this.size = buffer.limit();
+		this.sourceName = sourceName;
+	}
+
+	//========================
+	// FACTORIES
+	//========================
+
+	/**
+	 * Mapt het bestand read-only in het geheugen.
+	 * @param path het te lezen bestand
+	 * @return stream over de inhoud van het bestand
+	 * @throws IOException als het bestand niet gelezen kan worden of groter is dan 2GB
+	 */
+	public static MappedCharStream fromPath(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new MappedCharStream(map(channel), path.toString());
+		}
+	}
+
+	/**
+	 * Leest een channel. Een FileChannel wordt vanaf de huidige positie gemapt,
+	 * andere channels worden volledig in een byte buffer ingelezen. In beide gevallen staat
+	 * het channel daarna aan het einde, net alsof alle bytes gelezen zijn.
+	 * @param channel het te lezen channel, wordt niet gesloten
+	 * @return stream over de inhoud van het channel
+	 * @throws IOException als het lezen mislukt
+	 */
+	public static MappedCharStream fromChannel(ReadableByteChannel channel) throws IOException {
+		if (channel instanceof FileChannel) {
+			return new MappedCharStream(map((FileChannel) channel), IntStream.UNKNOWN_SOURCE_NAME);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		while (channel.read(buffer) >= 0) {
+			if (!buffer.hasRemaining()) {
+				// Buffer vol: verdubbelen en verder lezen.
+				ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				bigger.put(buffer);
+				buffer = bigger;
+			}
+		}
+		buffer.flip();
+		return new MappedCharStream(buffer, IntStream.UNKNOWN_SOURCE_NAME);
+	}
+
+	private static ByteBuffer map(FileChannel channel) throws IOException {
+		long position = channel.position();
+		long length = channel.size() - position;
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Invoer is te groot om te mappen: " + length + " bytes");
+		}
+		ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		// Mappen verplaatst de positie niet; de gemapte bytes gelden als gelezen
+		channel.position(position + length);
+		return mapped;
+	}
+
+	/**
+	 * Maakt een stream over een deel van deze invoer, zonder de bytes te kopiëren.
+	 * @param start begin van het deel
+	 * @param end einde (exclusief) van het deel
+	 * @return nieuwe stream die bij index 0 begint
+	 */
+	public MappedCharStream slice(int start, int end) {
+		ByteBuffer part = buffer.duplicate();
+		part.position(start);
+		part.limit(end);
+		return new MappedCharStream(part.slice(), sourceName);
+	}
+
+	//========================
+	// CHARSEQUENCE
+	//========================
+	@Override
+	public int length() {
+		return size;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char) (buffer.get(index) & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return getText(Interval.of(start, end - 1));
+	}
+
+	//========================
+	// CHARSTREAM
+	//========================
+	@Override
+	public String getText(Interval interval) {
+		int start = Math.max(interval.a, 0);
+		int stop = Math.min(interval.b, size - 1);
+		if (stop < start) return "";
+
+		byte[] bytes = new byte[stop - start + 1];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public void consume() {
+		if (index >= size) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+		index++;
+	}
+
+	@Override
+	public int LA(int i) {
+		if (i == 0) return 0; // Ongedefinieerd volgens het IntStream contract
+		int position = i < 0 ? index + i : index + i - 1;
+		if (position < 0 || position >= size) return IntStream.EOF;
+		return buffer.get(position) & 0xFF;
+	}
+
+	@Override
+	public int mark() {
+		return -1; // Alles staat al in de buffer, markeren is niet nodig
+	}
+
+	@Override
+	public void release(int marker) {
+	}
+
+	@Override
+	public int index() {
+		return index;
+	}
+
+	@Override
+	public void seek(int index) {
+		this.index = Math.min(index, size);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String getSourceName() {
+		return sourceName;
+	}
+
+	@Override
+	public String toString() {
+		return getText(Interval.of(0, size - 1));
+	}
+}
@@ -0,0 +1,248 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.LL1Analyzer;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Telt per beslissing in ICSS.g4 op hoeveel werk de voorspelling van ICSSParser kost.
+ *
+ * De cijfers komen uit Antlr's ProfilingATNSimulator ({@code parser.setProfile(true)}) en worden
+ * over alle geprofileerde parses opgeteld. Let op: de simulator ziet alleen beslissingen die via
+ * adaptivePredict gaan. Voor een LL(1) beslissing genereert Antlr een switch op het volgende
+ * token, die kost (bijna) niets en telt dus niet mee. Daarom staat per beslissing ook of hij
+ * LL(1) is, en meet een {@link Recorder} per regel hoe vaak hij aangeroepen is en hoeveel tijd
+ * de regel inclusief subregels kost.
+ *
+ * Het rapport laat alleen de regels zien waar de grammatica keuzes maakt die duur kunnen zijn,
+ * zie {@link #REPORTED_RULES}. Een parse met profiling is langzamer dan een gewone parse;
+ * gebruik het alleen om te meten.
+ */
+public class ParseProfile {
+
+	// Regels waarvan de beslissingen in het rapport staan
+	public static final List<String> REPORTED_RULES =
+			List.of("statement", "ifStatement", "additionExpr", "multiplicationExpr", "primaryExpr");
+
+	// Per beslissing: kan hij met één token lookahead beslist worden
+	private static final boolean[] LL1 = findLL1Decisions();
+
+	//========================
+	// ATTRIBUTES
+	//========================
+	private int parses = 0;
+	private final long[] ruleCalls; // Per regel
+	private final long[] ruleTime; // Nanoseconden, inclusief subregels
+	private final long[] invocations;
+	private final long[] timeInPrediction; // Nanoseconden
+	private final long[] sllTotalLook; // Aantal tokens vooruitgekeken met SLL
+	private final long[] sllMaxLook;
+	private final long[] llFallback; // Aantal keer dat SLL niet genoeg was en LL nodig was
+	private final long[] llTotalLook;
+	private final long[] llMaxLook;
+	private final long[] ambiguities;
+	private final long[] errors;
+
+	public ParseProfile() {
+		int decisions = ICSSParser._ATN.getNumberOfDecisions();
+		invocations = new long[decisions];
+		timeInPrediction = new long[decisions];
+		sllTotalLook = new long[decisions];
+		sllMaxLook = new long[decisions];
+		llFallback = new long[decisions];
+		llTotalLook = new long[decisions];
+		llMaxLook = new long[decisions];
+		ambiguities = new long[decisions];
+		errors = new long[decisions];
+		ruleCalls = new long[ICSSParser.ruleNames.length];
+		ruleTime = new long[ICSSParser.ruleNames.length];
+	}
+
+	// Dezelfde analyse die Antlr gebruikt om een switch te genereren: ieder alternatief heeft
+	// een eigen, niet overlappende set eerste tokens
+	private static boolean[] findLL1Decisions() {
+		ATN atn = ICSSParser._ATN;
+		LL1Analyzer analyzer = new LL1Analyzer(atn);
+		boolean[] ll1 = new boolean[atn.getNumberOfDecisions()];
+		for (int decision = 0; decision < ll1.length; decision++) {
+			IntervalSet[] look = analyzer.getDecisionLookahead(atn.getDecisionState(decision));
+			ll1[decision] = true;
+			for (int i = 0; i < look.length && ll1[decision]; i++) {
+				if (look[i] == null) {
+					ll1[decision] = false;
+					break;
+				}
+				for (int j = i + 1; j < look.length; j++) {
+					if (look[j] == null || !look[i].and(look[j]).isNil()) {
+						ll1[decision] = false;
+						break;
+					}
+				}
+			}
+		}
+		return ll1;
+	}
+
+	/**
+	 * @param decision beslissingsnummer in ICSSParser._ATN
+	 * @return true als Antlr de beslissing met één token lookahead neemt, zonder adaptivePredict
+	 */
+	public static boolean isLL1(int decision) {
+		return LL1[decision];
+	}
+
+	/**
+	 * @return een nieuwe recorder, die als parse listener per regel aanroepen en tijd meet
+	 */
+	public Recorder newRecorder() {
+		return new Recorder();
+	}
+
+	/**
+	 * Telt de cijfers van één geprofileerde parse op. Mag door meerdere threads tegelijk
+	 * aangeroepen worden.
+	 * @param decisionInfo resultaat van {@code parser.getParseInfo().getDecisionInfo()}
+	 */
+	public synchronized void add(DecisionInfo[] decisionInfo, Recorder recorder) {
+		parses++;
+		for (int rule = 0; rule < ruleCalls.length; rule++) {
+			ruleCalls[rule] += recorder.calls[rule];
+			ruleTime[rule] += recorder.time[rule];
+		}
+		for (DecisionInfo info : decisionInfo) {
+			int decision = info.decision;
+			invocations[decision] += info.invocations;
+			timeInPrediction[decision] += info.timeInPrediction;
+			sllTotalLook[decision] += info.SLL_TotalLook;
+			sllMaxLook[decision] = Math.max(sllMaxLook[decision], info.SLL_MaxLook);
+			llFallback[decision] += info.LL_Fallback;
+			llTotalLook[decision] += info.LL_TotalLook;
+			llMaxLook[decision] = Math.max(llMaxLook[decision], info.LL_MaxLook);
+			ambiguities[decision] += info.ambiguities.size();
+			errors[decision] += info.errors.size();
+		}
+	}
+
+	public synchronized int getParses() {
+		return parses;
+	}
+
+	public synchronized long getInvocations(int decision) {
+		return invocations[decision];
+	}
+
+	public synchronized long getLLFallbacks(int decision) {
+		return llFallback[decision];
+	}
+
+	public synchronized long getRuleCalls(int rule) {
+		return ruleCalls[rule];
+	}
+
+	public synchronized void clear() {
+		parses = 0;
+		for (long[] counts : Arrays.asList(ruleCalls, ruleTime, invocations, timeInPrediction, sllTotalLook, sllMaxLook,
+				llFallback, llTotalLook, llMaxLook, ambiguities, errors)) {
+			Arrays.fill(counts, 0);
+		}
+	}
+
+	/**
+	 * @param decision beslissingsnummer in ICSSParser._ATN
+	 * @return naam van de regel waar de beslissing in staat
+	 */
+	public static String ruleOf(int decision) {
+		return ICSSParser.ruleNames[ICSSParser._ATN.getDecisionState(decision).ruleIndex];
+	}
+
+	/**
+	 * Maakt twee tabellen voor de regels uit {@link #REPORTED_RULES}. De eerste geeft per regel
+	 * het aantal aanroepen en de tijd inclusief subregels. De tweede geeft per beslissing of hij
+	 * LL(1) is, het aantal keer voorspeld via adaptivePredict, gemiddelde en maximale lookahead
+	 * met SLL en LL, het aantal keer terugvallen op LL (full context), ambiguïteiten, fouten en
+	 * de totale tijd in de voorspelling.
+	 * @return leesbaar rapport
+	 */
+	public synchronized String report() {
+		StringBuilder report = new StringBuilder();
+		report.append("Parse profile (").append(parses).append(" parses)\n");
+		report.append(String.format("%-20s %10s %10s%n", "rule", "calls", "time ms"));
+		for (String rule : REPORTED_RULES) {
+			int index = Arrays.asList(ICSSParser.ruleNames).indexOf(rule);
+			report.append(String.format("%-20s %10d %10.3f%n", rule, ruleCalls[index], ruleTime[index] / 1_000_000.0));
+		}
+		report.append(String.format("%n%-20s %5s %8s %10s %9s %8s %11s %8s %6s %6s %10s%n",
+				"decision", "LL(1)", "calls", "SLL avg", "SLL max", "LL fall", "LL avg", "LL max", "amb", "err", "time ms"));
+		for (String rule : REPORTED_RULES) {
+			for (int decision = 0; decision < invocations.length; decision++) {
+				if (!ruleOf(decision).equals(rule)) {
+					continue;
+				}
+				report.append(String.format("%-20s %5s %8d %10.2f %9d %8d %11.2f %8d %6d %6d %10.3f%n",
+						rule + " " + decision,
+						LL1[decision] ? "yes" : "no",
+						invocations[decision],
+						average(sllTotalLook[decision], invocations[decision]),
+						sllMaxLook[decision],
+						llFallback[decision],
+						average(llTotalLook[decision], llFallback[decision]),
+						llMaxLook[decision],
+						ambiguities[decision],
+						errors[decision],
+						timeInPrediction[decision] / 1_000_000.0));
+			}
+		}
+		return report.toString();
+	}
+
+	private static double average(long total, long count) {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	/**
+	 * Parse listener die per regel het aantal aanroepen en de tijd bijhoudt, voor één parse.
+	 * Voeg hem toe met {@code parser.addParseListener} en geef hem daarna aan
+	 * {@link #add(DecisionInfo[], Recorder)}.
+	 */
+	public static class Recorder implements ParseTreeListener {
+		private final long[] calls = new long[ICSSParser.ruleNames.length];
+		private final long[] time = new long[ICSSParser.ruleNames.length];
+		private long[] started = new long[16]; // Starttijd per diepte van de context
+
+		private Recorder() {
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			// De diepte komt uit de context zelf, zodat een afgebroken parse (BailErrorStrategy)
+			// de tijden van een volgende parse niet verstoort
+			int depth = ctx.depth();
+			if (depth >= started.length) {
+				started = Arrays.copyOf(started, depth * 2);
+			}
+			calls[ctx.getRuleIndex()]++;
+			started[depth] = System.nanoTime();
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+			time[ctx.getRuleIndex()] += System.nanoTime() - started[ctx.depth()];
+		}
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package nl.han.ica.icss.parser;
+
+/**
+ * Zoekt snel de grenzen van top-level items (variableAssignment of ruleset) in ICSS tekst,
+ * zonder te lexen of te parsen.
+ *
+ * Een item begint bij het eerste teken dat geen whitespace is en eindigt na een ';' buiten
+ * accolades (variableAssignment) of na de '}' die de accolades weer sluit (ruleset). Omdat
+ * ICSS geen strings of commentaar kent, is dat voor geldige invoer precies de grens tussen
+ * twee items van {@code stylesheet}. Ongeldige invoer levert ook items op; de parser meldt
+ * dan de fout.
+ *
+ * De scanner onthoudt waar hij gebleven is, zodat tekst die in delen binnenkomt verder
+ * gescand kan worden. Regel en kolom worden net zo geteld als door de lexer, zodat een item
+ * los geparsed kan worden met de juiste regelnummers in foutmeldingen.
+ */
+public class TopLevelScanner {
+
+	//========================
+	// ATTRIBUTES
+	//========================
+	private int position; // Volgende te scannen positie
+	private int depth = 0; // Aantal open accolades
+	private int itemStart = -1; // Begin van het huidige item, -1 als er geen item open is
+	private int itemEnd = -1; // Einde (exclusief) van het laatst gevonden item
+	private int line = 1; // Regel en kolom van position
+	private int charPositionInLine = 0;
+	private int itemLine; // Regel en kolom van itemStart
+	private int itemCharPositionInLine;
+
+	public TopLevelScanner() {
+		this(0);
+	}
+
+	public TopLevelScanner(int position) {
+		this.position = position;
+	}
+
+	/**
+	 * Scant verder tot het einde van het volgende complete item, maar niet voorbij limit.
+	 * @param text de tekst
+	 * @param limit einde (exclusief) van het deel van de tekst dat gescand mag worden
+	 * @return true als er een item gevonden is, zie {@link #getItemStart()} en {@link #getItemEnd()}
+	 */
+	public boolean next(CharSequence text, int limit) {
+		if (itemEnd >= 0) {
+			// Vorige item is al teruggegeven
+			itemStart = itemEnd = -1;
+		}
+		while (position < limit) {
+			char c = text.charAt(position++);
+			if (itemStart < 0 && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+				itemStart = position - 1;
+				itemLine = line;
+				itemCharPositionInLine = charPositionInLine;
+			}
+			if (c == '\n') {
+				line++;
+				charPositionInLine = 0;
+			} else {
+				charPositionInLine++;
+			}
+			if (itemStart < 0) continue;
+
+			if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				if (depth > 0) depth--;
+				if (depth == 0) {
+					itemEnd = position;
+					return true;
+				}
+			} else if (c == ';' && depth == 0) {
+				itemEnd = position;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getItemStart() {
+		return itemStart;
+	}
+
+	public int getItemEnd() {
+		return itemEnd;
+	}
+
+	public int getItemLine() {
+		return itemLine;
+	}
+
+	public int getItemCharPositionInLine() {
+		return itemCharPositionInLine;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return true als er na het laatst gevonden item nog een onvolledig item is gescand
+	 */
+	public boolean isInsideItem() {
+		return itemStart >= 0 && itemEnd < 0;
+	}
+
+	/**
+	 * Verschuift alle posities, voor als het begin van de gescande tekst is weggegooid.
+	 * @param offset aantal weggegooide tekens
+	 */
+	public void shift(int offset) {
+		position -= offset;
+		if (itemStart >= 0) itemStart -= offset;
+		if (itemEnd >= 0) itemEnd -= offset;
+	}
+}
@@ -0,0 +1,53 @@
+package nl.han.ica.icss.trace;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Expression;
+import nl.han.ica.icss.ast.Literal;
+
+/**
+ * Luistert naar wat de compiler doet, bijvoorbeeld om te debuggen. Alle methodes doen standaard
+ * niets. {@link #NONE} wordt gebruikt als er niet getraced wordt; de JIT kan de aanroepen dan
+ * helemaal weglaten, dus zonder tracer kost tracen niets. Zie {@link PrintTracer} om een trace
+ * af te drukken.
+ */
+public interface CompileTracer {
+
+    /**
+     * Tracer die niets doet.
+     */
+    CompileTracer NONE = new CompileTracer() {
+    };
+
+    /**
+     * Een stap van de pipeline begint.
+     * @param stage naam van de stap, bijvoorbeeld "check" of "transform"
+     */
+    default void stageStart(String stage) {
+    }
+
+    /**
+     * Een stap van de pipeline is klaar.
+     * @param stage naam van de stap
+     * @param ast de AST na de stap
+     */
+    default void stageEnd(String stage, AST ast) {
+    }
+
+    /**
+     * De knoop wordt verwerkt; elke enter wordt gevolgd door een {@link #exitNode(ASTNode)}.
+     */
+    default void enterNode(ASTNode node) {
+    }
+
+    default void exitNode(ASTNode node) {
+    }
+
+    /**
+     * De waarde van een expressie is uitgerekend.
+     * @param expression de oorspronkelijke expressie
+     * @param value de uitgerekende waarde
+     */
+    default void valueComputed(Expression expression, Literal value) {
+    }
+}
@@ -0,0 +1,96 @@
+package nl.han.ica.icss.trace;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Expression;
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.Traversal;
+
+import java.io.PrintStream;
+
+/**
+ * Drukt een trace af: elke verwerkte knoop (ingesprongen naar diepte) met de uitgerekende
+ * waarden, en na elke stap de hele AST.
+ */
+public class PrintTracer implements CompileTracer {
+
+	private final PrintStream out;
+	private boolean traceNodes = true;
+	private boolean dumpAST = true;
+	private int depth = 0;
+
+	public PrintTracer(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * @param traceNodes true om elke verwerkte knoop af te drukken
+	 */
+	public void setTraceNodes(boolean traceNodes) {
+		this.traceNodes = traceNodes;
+	}
+
+	/**
+	 * @param dumpAST true om na elke stap de AST af te drukken
+	 */
+	public void setDumpAST(boolean dumpAST) {
+		this.dumpAST = dumpAST;
+	}
+
+	@Override
+	public void stageStart(String stage) {
+		out.println("=== " + stage + " ===");
+	}
+
+	@Override
+	public void stageEnd(String stage, AST ast) {
+		if (dumpAST && ast != null && ast.root != null) {
+			out.println("=== AST na " + stage + " ===");
+			dump(ast.root, 0);
+		}
+		out.println("=== Einde " + stage + " ===");
+	}
+
+	@Override
+	public void enterNode(ASTNode node) {
+		if (traceNodes) {
+			out.println("  ".repeat(depth) + "Evaluating node: " + node.getNodeLabel());
+		}
+		depth++;
+	}
+
+	@Override
+	public void exitNode(ASTNode node) {
+		depth--;
+	}
+
+	@Override
+	public void valueComputed(Expression expression, Literal value) {
+		if (traceNodes) {
+			out.println("  ".repeat(depth) + "= " + value.getNodeLabel());
+		}
+	}
+
+	/**
+	 * Drukt een subboom af, elke knoop op een eigen regel en twee spaties ingesprongen per niveau.
+	 * @param node de wortel van de subboom
+	 * @param indent aantal spaties voor de wortel
+	 */
+	public void dump(ASTNode node, int indent) {
+		new Traversal().walk(node, new Traversal.Walker() {
+			private int depth = indent;
+
+			@Override
+			public boolean enter(ASTNode child) {
+				out.println(" ".repeat(depth) + child.getNodeLabel());
+				depth += 2;
+				return true;
+			}
+
+			@Override
+			public void exit(ASTNode child) {
+				depth -= 2;
+			}
+		});
+	}
+}
@@ -1,37 +1,79 @@
 package nl.han.ica.icss.transforms;
 
-import nl.han.ica.datastructures.HANLinkedList;
-import nl.han.ica.datastructures.IHANLinkedList;
+import nl.han.ica.datastructures.SymbolTable;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.*;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.trace.CompileTracer;
 
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
-public class Evaluator implements Transform {
+public class Evaluator implements Transform, ASTVisitor<ASTNode, List<ASTNode>> {
 
-    // Stack (stapel) van scopes.
-    // Elke scope is een HashMap waarin variabelenamen aan Literal-waarden worden gekoppeld.
-    // Gebruik: een linked list zodat scopes gemakkelijk aan het begin kunnen worden toegevoegd/verwijderd.
-    private IHANLinkedList<HashMap<String, Literal>> variableValues;
+    // Waarde van elke variabele, per scope. Variabelen worden opgezocht met hun id (zie
+    // VariableIds), dat bij het bouwen van de AST al bepaald is: geen strings hashen.
+    private SymbolTable<Literal> variableValues;
+
+    // Krijgt elke geëvalueerde knoop en waarde, standaard een tracer die niets doet
+    private final CompileTracer tracer;
+
+    // Doorloopt statements en expressies zonder recursie, zodat de nesting alleen door het geheugen begrensd wordt
+    private final Traversal traversal = new Traversal();
+    private final Traversal.Walker statements = new StatementWalker();
+    private final ExpressionEvaluator values = new ExpressionEvaluator(traversal);
+
+    // Nieuwe bodies die nu gevuld worden, de binnenste bovenaan
+    private final ArrayDeque<List<ASTNode>> bodies = new ArrayDeque<>();
+    private Stylesheet evaluatedStylesheet; // Resultaat van de laatst geëvalueerde Stylesheet
 
     // Constructor: initialiseert een lege lijst van scopes.
     public Evaluator() {
-        variableValues = new HANLinkedList<>();
+        this(CompileTracer.NONE);
+    }
+
+    /**
+     * @param tracer krijgt een enter en exit voor elk statement en de uitgerekende waarden
+     */
+    public Evaluator(CompileTracer tracer) {
+        this.tracer = tracer;
+        variableValues = new SymbolTable<>();
     }
 
+    /**
+     * Rekent alle expressies uit en vervangt if-clauses door de gekozen body. De AST zelf wordt
+     * niet veranderd: het resultaat is een nieuwe AST die alle onveranderde subbomen hergebruikt.
+     * Dezelfde AST kan dus vaker (en tegelijk, met een Evaluator per thread) geëvalueerd worden.
+     */
     @Override
-    public void apply(AST ast) {
+    public AST apply(AST ast) {
         // Start met een schone stack.
-        variableValues = new HANLinkedList<>();
+        variableValues = new SymbolTable<>();
+        values.reset();
         // Open een globale scope (geldt voor de hele stylesheet).
         openNewScope();
         // Begin met traverseren van de AST vanaf de root.
-        evaluateNode(ast.root, null);
+        AST result = new AST((Stylesheet) ast.root.accept(this, null));
         // Sluit de globale scope wanneer klaar.
         closeCurrentScope();
+        return result;
+    }
+
+    // Start een evaluatie in delen: alleen de globale scope blijft tussen de delen bewaard.
+    public void begin() {
+        variableValues = new SymbolTable<>();
+        values.reset();
+        openNewScope();
+    }
+
+    // Evalueer het volgende deel van een stylesheet met de globale variabelen van eerdere delen.
+    public AST applyNext(AST part) {
+        return new AST((Stylesheet) part.root.accept(this, null));
     }
 
     // -------------------------
@@ -40,132 +82,264 @@ public class Evaluator implements Transform {
 
     // Nieuwe scope openen (wordt bovenaan de stack gelegd).
     private void openNewScope() {
-        variableValues.addFirst(new HashMap<>());
+        variableValues.pushScope();
     }
 
     // Huidige scope sluiten (verwijderen van de top van de stack).
     private void closeCurrentScope() {
-        if (variableValues.getSize() > 0) variableValues.removeFirst();
+        if (variableValues.getDepth() > 0) variableValues.popScope();
     }
 
     // Variabele definiëren of overschrijven in de huidige scope.
-    private void defineVariable(String name, Literal value) {
-        variableValues.getFirst().put(name, value);
+    private void defineVariable(int id, Literal value) {
+        variableValues.define(id, value);
     }
 
     // Variabele opzoeken in de stack van scopes (van binnen naar buiten).
-    private Literal findVariable(String name) {
-        try {
-            HashMap<String, Literal> top = variableValues.getFirst();
-            if (top != null && top.containsKey(name)) return top.get(name);
-        } catch (Exception ignored) { }
-
-        // Zoek verder in oudere scopes (van binnen naar buiten).
-        int n = variableValues.getSize();
-        for (int i = n - 1; i >= 0; i--) {
-            HashMap<String, Literal> scope = variableValues.get(i);
-            if (scope != null && scope.containsKey(name)) return scope.get(name);
-        }
-        return null;
+    private Literal findVariable(int id) {
+        return variableValues.lookup(id);
     }
 
     // -------------------------
     // Tree traversal
     // -------------------------
 
-    // Doorloopt recursief de AST en voert transformaties uit.
-    private void evaluateNode(ASTNode node, ASTNode parent) {
-        // Debug-output: toont welk type knoop wordt geëvalueerd.
-        String indent = parent == null ? "" : "  ";
-        System.out.println(indent + "Evaluating node: " + node.getClass().getSimpleName()
-                + (node instanceof VariableAssignment ? " (" + ((VariableAssignment) node).name.name + ")" : "")
-                + (node instanceof Declaration ? " (" + ((Declaration) node).property.name + ")" : "")
-                + (node instanceof IfClause ? " (IfClause)" : ""));
-
-        // Check of deze knoop een “modificeerbare body” heeft (direct aanpasbare lijst).
-        List<ASTNode> editableList = getModifiableBody(node);
-        if (editableList != null) {
-            // Index-gestuurde loop zodat we veilig knopen kunnen verwijderen of invoegen.
-            for (int index = 0; index < editableList.size(); index++) {
-                ASTNode currentNode = editableList.get(index);
+    // Evalueert een statement en voegt de geëvalueerde versie toe aan context (de nieuwe body). Een
+    // IfClause voegt zo direct de statements van de gekozen tak toe, ook bij geneste if-clauses.
+    private void evaluateStatement(ASTNode statement, List<ASTNode> context) {
+        bodies.push(context);
+        try {
+            traversal.walk(statement, statements);
+        } finally {
+            bodies.pop();
+        }
+    }
 
-                // Nieuwe scope openen bij een stylerule.
-                if (currentNode instanceof Stylerule) {
-                    openNewScope();
-                    evaluateNode(currentNode, node);
-                    closeCurrentScope();
-                    continue;
+    // Nieuwe body die pas een lijst maakt bij het eerste statement dat anders is dan in de
+    // oorspronkelijke body. Zolang alles gelijk is, kan de oude knoop hergebruikt worden.
+    private static class BodyBuilder extends AbstractList<ASTNode> {
+        private final List<ASTNode> original;
+        private int unchanged = 0; // Lengte van het begin dat gelijk is aan de oorspronkelijke body
+        private ArrayList<ASTNode> nodes = null;
+
+        BodyBuilder(List<ASTNode> original) {
+            this.original = original;
+        }
+
+        @Override
+        public boolean add(ASTNode node) {
+            if (nodes == null) {
+                if (unchanged < original.size() && original.get(unchanged) == node) {
+                    unchanged++;
+                    return true;
                 }
+                nodes = new ArrayList<>(Math.max(original.size(), unchanged + 1));
+                nodes.addAll(original.subList(0, unchanged));
+            }
+            nodes.add(node);
+            return true;
+        }
 
-                // IfClause evalueren: conditie checken en body vervangen.
-                if (currentNode instanceof IfClause) {
-                    IfClause ifNode = (IfClause) currentNode;
-                    Literal condition = evaluateExpression(ifNode.conditionalExpression);
-                    boolean isTrue = (condition instanceof BoolLiteral) && ((BoolLiteral) condition).value;
+        @Override
+        public ASTNode get(int index) {
+            return nodes != null ? nodes.get(index) : original.get(index);
+        }
 
-                    // Kies de juiste body (if of else).
-                    List<ASTNode> chosenBody = isTrue
-                            ? new ArrayList<>(ifNode.body)
-                            : (ifNode.elseClause != null ? new ArrayList<>(ifNode.elseClause.body) : new ArrayList<>());
+        @Override
+        public int size() {
+            return nodes != null ? nodes.size() : unchanged;
+        }
 
-                    // Vervang de IfClause zelf door de gekozen body.
-                    editableList.remove(index);
+        boolean isUnchanged() {
+            return nodes == null && unchanged == original.size();
+        }
 
-                    if (!chosenBody.isEmpty()) {
-                        editableList.addAll(index, chosenBody);
-                        // Index aanpassen zodat de net ingevoegde knopen ook bezocht worden.
-                        index = index - 1;
-                    } else {
-                        // Geen body ingevoegd, dus alleen index bijstellen.
-                        index = index - 1;
-                    }
-                    continue;
-                }
+        ArrayList<ASTNode> toArrayList() {
+            return nodes != null ? nodes : new ArrayList<>(original.subList(0, unchanged));
+        }
+    }
 
-                // ElseClause: verwerk gewoon de kinderen verder.
-                if (currentNode instanceof ElseClause) {
-                    evaluateNode(currentNode, node);
-                    continue;
-                }
+    @Override
+    public ASTNode visitStylesheet(Stylesheet node, List<ASTNode> context) {
+        traversal.walk(node, statements);
+        Stylesheet result = evaluatedStylesheet;
+        evaluatedStylesheet = null;
+        return result;
+    }
 
-                // VariableAssignment: rechterkant evalueren en variabele opslaan in scope.
-                if (currentNode instanceof VariableAssignment) {
-                    VariableAssignment va = (VariableAssignment) currentNode;
-                    Literal value = evaluateExpression(va.expression);
-                    va.expression = value;
-                    defineVariable(va.name.name, value);
-                    // Kinderen van deze knoop ook evalueren (voor de zekerheid).
-                    evaluateNode(currentNode, node);
-                    continue;
-                }
+    @Override
+    public ASTNode visitStylerule(Stylerule node, List<ASTNode> context) {
+        evaluateStatement(node, context);
+        return null;
+    }
 
-                // Declaration: expression evalueren naar Literal.
-                if (currentNode instanceof Declaration) {
-                    Declaration decl = (Declaration) currentNode;
-                    if (decl.expression != null) decl.expression = evaluateExpression(decl.expression);
-                    evaluateNode(currentNode, node);
-                    continue;
-                }
+    @Override
+    public ASTNode visitIfClause(IfClause node, List<ASTNode> context) {
+        evaluateStatement(node, context);
+        return null;
+    }
 
-                // Voor alle overige knopen: gewoon recursief verder.
-                evaluateNode(currentNode, node);
+    @Override
+    public ASTNode visitElseClause(ElseClause node, List<ASTNode> context) {
+        evaluateStatement(node, context);
+        return null;
+    }
+
+    @Override
+    public ASTNode visitVariableAssignment(VariableAssignment node, List<ASTNode> context) {
+        evaluateStatement(node, context);
+        return null;
+    }
+
+    @Override
+    public ASTNode visitDeclaration(Declaration node, List<ASTNode> context) {
+        evaluateStatement(node, context);
+        return null;
+    }
+
+    // Evalueert de statements van voor naar achter. Een Stylesheet of Stylerule krijgt bij het
+    // binnengaan een nieuwe body, die na de kinderen aan de body eromheen wordt toegevoegd.
+    private class StatementWalker extends Traversal.VisitingWalker {
+
+        @Override
+        public Boolean visitStylesheet(Stylesheet node, Phase phase) {
+            if (phase == Phase.ENTER) {
+                tracer.enterNode(node);
+                bodies.push(new BodyBuilder(node.body));
+            } else {
+                tracer.exitNode(node);
+                BodyBuilder body = (BodyBuilder) bodies.pop();
+                evaluatedStylesheet = body.isUnchanged() ? node : new Stylesheet(body.toArrayList());
             }
-            return;
+            return true;
         }
 
-        // Als dit geen modificeerbare body heeft, loop over de gewone children.
-        for (ASTNode child : node.getChildren()) {
-            evaluateNode(child, node);
+        @Override
+        public Boolean visitStylerule(Stylerule node, Phase phase) {
+            if (phase == Phase.ENTER) {
+                // Nieuwe scope openen bij een stylerule.
+                tracer.enterNode(node);
+                openNewScope();
+                bodies.push(new BodyBuilder(node.body));
+                visitChildren(node.body);
+                return true;
+            }
+            closeCurrentScope();
+            tracer.exitNode(node);
+            BodyBuilder body = (BodyBuilder) bodies.pop();
+            if (body.isUnchanged()) {
+                bodies.peek().add(node);
+            } else {
+                Stylerule evaluated = new Stylerule();
+                evaluated.selectors = new ArrayList<>(node.selectors);
+                evaluated.body = body.toArrayList();
+                bodies.peek().add(evaluated);
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean visitIfClause(IfClause node, Phase phase) {
+            if (phase == Phase.EXIT) {
+                tracer.exitNode(node);
+                return true;
+            }
+            // IfClause evalueren: conditie checken en de gekozen body in de plaats van de IfClause zetten.
+            tracer.enterNode(node);
+            Literal condition = evaluateExpression(node.conditionalExpression);
+            tracer.valueComputed(node.conditionalExpression, condition);
+            boolean isTrue = (condition instanceof BoolLiteral) && ((BoolLiteral) condition).value;
+
+            // Kies de juiste body (if of else); de statements komen in de huidige scope.
+            if (isTrue) {
+                visitChildren(node.body);
+            } else if (node.elseClause != null) {
+                visitChildren(List.of(node.elseClause));
+            } else {
+                visitChildren(List.of());
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean visitElseClause(ElseClause node, Phase phase) {
+            // ElseClause: verwerk gewoon de kinderen verder.
+            if (phase == Phase.ENTER) {
+                tracer.enterNode(node);
+            } else {
+                tracer.exitNode(node);
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean visitVariableAssignment(VariableAssignment node, Phase phase) {
+            evaluateVariableAssignment(node, bodies.peek());
+            return false;
+        }
+
+        @Override
+        public Boolean visitDeclaration(Declaration node, Phase phase) {
+            evaluateDeclaration(node, bodies.peek());
+            return false;
         }
     }
 
-    // Haal de echte aanpasbare lijst op voor knooptypes die dat hebben.
-    private List<ASTNode> getModifiableBody(ASTNode node) {
-        if (node instanceof Stylesheet) return ((Stylesheet) node).body;
-        if (node instanceof Stylerule) return ((Stylerule) node).body;
-        if (node instanceof IfClause) return ((IfClause) node).body;
-        if (node instanceof ElseClause) return ((ElseClause) node).body;
-        return null;
+    private void evaluateVariableAssignment(VariableAssignment node, List<ASTNode> context) {
+        // VariableAssignment: rechterkant evalueren en variabele opslaan in scope.
+        tracer.enterNode(node);
+        Literal value = evaluateExpression(node.expression);
+        tracer.valueComputed(node.expression, value);
+        defineVariable(values.variableId(node.name), value);
+
+        if (value == node.expression) {
+            context.add(node);
+        } else {
+            VariableAssignment evaluated = new VariableAssignment();
+            evaluated.name = node.name;
+            evaluated.expression = value;
+            context.add(evaluated);
+        }
+        tracer.exitNode(node);
+    }
+
+    private void evaluateDeclaration(Declaration node, List<ASTNode> context) {
+        // Declaration: expression evalueren naar Literal.
+        tracer.enterNode(node);
+        Literal value = node.expression != null ? evaluateExpression(node.expression) : null;
+        if (value != null) {
+            tracer.valueComputed(node.expression, value);
+        }
+
+        if (value == node.expression) {
+            context.add(node);
+        } else {
+            Declaration evaluated = new Declaration();
+            evaluated.property = node.property;
+            evaluated.expression = value;
+            context.add(evaluated);
+        }
+        tracer.exitNode(node);
+    }
+
+    @Override
+    public ASTNode visitPropertyName(PropertyName node, List<ASTNode> context) {
+        return node;
+    }
+
+    @Override
+    public ASTNode visitClassSelector(ClassSelector node, List<ASTNode> context) {
+        return node;
+    }
+
+    @Override
+    public ASTNode visitIdSelector(IdSelector node, List<ASTNode> context) {
+        return node;
+    }
+
+    @Override
+    public ASTNode visitTagSelector(TagSelector node, List<ASTNode> context) {
+        return node;
     }
 
     // -------------------------
@@ -174,81 +348,185 @@ public class Evaluator implements Transform {
 
     // Reken een expression uit en geef een Literal terug.
     private Literal evaluateExpression(Expression expression) {
-        if (expression == null) return new ScalarLiteral(0);
-
-        // Als het al een Literal is, return meteen.
-        if (expression instanceof PixelLiteral) return (PixelLiteral) expression;
-        if (expression instanceof PercentageLiteral) return (PercentageLiteral) expression;
-        if (expression instanceof ScalarLiteral) return (ScalarLiteral) expression;
-        if (expression instanceof ColorLiteral) return (ColorLiteral) expression;
-        if (expression instanceof BoolLiteral) return (BoolLiteral) expression;
-
-        // Variabele-referentie: zoek waarde in scopes.
-        if (expression instanceof VariableReference) {
-            String name = ((VariableReference) expression).name;
-            Literal found = findVariable(name);
-            return (found != null) ? found : new ScalarLiteral(0);
-        }
-
-        // Optellen of aftrekken: beide kanten evalueren en combineren.
-        if (expression instanceof AddOperation || expression instanceof SubtractOperation) {
-            Operation operation = (Operation) expression;
-            Literal left = evaluateExpression(operation.lhs);
-            Literal right = evaluateExpression(operation.rhs);
-            boolean isPlus = expression instanceof AddOperation;
-            return computeOperation(left, right, isPlus ? "+" : "-");
-        }
-
-        // Vermenigvuldigen: beide kanten evalueren en resultaat berekenen.
-        if (expression instanceof MultiplyOperation) {
-            Operation operation = (Operation) expression;
-            Literal left = evaluateExpression(operation.lhs);
-            Literal right = evaluateExpression(operation.rhs);
-            return computeOperation(left, right, "*");
-        }
-
-        // Onbekende expressie → terugvallen op 0 (scalar).
-        return new ScalarLiteral(0);
-    }
-
-    // Uitvoeren van rekenoperaties op Literals.
-    private Literal computeOperation(Literal lhs, Literal rhs, String op) {
-        // px ± px
-        if (lhs instanceof PixelLiteral && rhs instanceof PixelLiteral) {
-            int a = ((PixelLiteral) lhs).value;
-            int b = ((PixelLiteral) rhs).value;
-            return new PixelLiteral(op.equals("+") ? a + b : a - b);
-        }
-        // % ± %
-        if (lhs instanceof PercentageLiteral && rhs instanceof PercentageLiteral) {
-            int a = ((PercentageLiteral) lhs).value;
-            int b = ((PercentageLiteral) rhs).value;
-            return new PercentageLiteral(op.equals("+") ? a + b : a - b);
-        }
-        // scalar ±/* scalar
-        if (lhs instanceof ScalarLiteral && rhs instanceof ScalarLiteral) {
-            int a = ((ScalarLiteral) lhs).value;
-            int b = ((ScalarLiteral) rhs).value;
-            switch (op) {
-                case "+": return new ScalarLiteral(a + b);
-                case "-": return new ScalarLiteral(a - b);
-                case "*": return new ScalarLiteral(a * b);
+        return values.evaluate(expression, variableValues);
+    }
+
+    // Als het al een Literal is, return meteen.
+    @Override
+    public ASTNode visitPixelLiteral(PixelLiteral node, List<ASTNode> context) {
+        return node;
+    }
+
+    @Override
+    public ASTNode visitPercentageLiteral(PercentageLiteral node, List<ASTNode> context) {
+        return node;
+    }
+
+    @Override
+    public ASTNode visitScalarLiteral(ScalarLiteral node, List<ASTNode> context) {
+        return node;
+    }
+
+    @Override
+    public ASTNode visitColorLiteral(ColorLiteral node, List<ASTNode> context) {
+        return node;
+    }
+
+    @Override
+    public ASTNode visitBoolLiteral(BoolLiteral node, List<ASTNode> context) {
+        return node;
+    }
+
+    // Variabele-referentie: zoek waarde in scopes.
+    @Override
+    public ASTNode visitVariableReference(VariableReference node, List<ASTNode> context) {
+        Literal found = findVariable(values.variableId(node));
+        return (found != null) ? found : ScalarLiteral.valueOf(0);
+    }
+
+    // Optellen, aftrekken of vermenigvuldigen: beide kanten evalueren en combineren.
+    @Override
+    public ASTNode visitAddOperation(AddOperation node, List<ASTNode> context) {
+        return evaluateExpression(node);
+    }
+
+    @Override
+    public ASTNode visitSubtractOperation(SubtractOperation node, List<ASTNode> context) {
+        return evaluateExpression(node);
+    }
+
+    @Override
+    public ASTNode visitMultiplyOperation(MultiplyOperation node, List<ASTNode> context) {
+        return evaluateExpression(node);
+    }
+
+    // -------------------------
+    // FlatAST
+    // -------------------------
+
+    /**
+     * Evalueert een platte AST met dezelfde regels als {@link #apply(AST)}. Een FlatAST kan niet
+     * ter plekke herschreven worden, dus het resultaat is een nieuwe FlatAST waarin alle
+     * expressies uitgerekend zijn en if-clauses vervangen zijn door de gekozen body.
+     * @param flat de te evalueren AST, wordt niet veranderd
+     * @return de geëvalueerde AST
+     */
+    public FlatAST apply(FlatAST flat) {
+        variableValues = new SymbolTable<>();
+        openNewScope();
+        FlatAST result = new FlatAST(flat.size());
+        if (flat.size() > 0) {
+            traversal.walk(flat, flat.root(), new FlatStatementWalker(result));
+        }
+        closeCurrentScope();
+        return result;
+    }
+
+    // Schrijft de geëvalueerde statements als kinderen van de open knoop in result, net als de
+    // StatementWalker voor de objectboom.
+    private class FlatStatementWalker implements Traversal.FlatWalker {
+
+        private final FlatAST result;
+        private int chosenFirst, chosenEnd; // Gekozen tak van de IfClause die net binnengegaan is
+
+        FlatStatementWalker(FlatAST result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean enter(FlatAST flat, int node) {
+            switch (flat.kind(node)) {
+                case FlatAST.STYLESHEET:
+                    result.begin(FlatAST.STYLESHEET, 0);
+                    return true;
+                case FlatAST.STYLERULE:
+                    // Eerst de selectors, daarna de body in een eigen scope
+                    result.begin(FlatAST.STYLERULE, 0);
+                    for (int child = flat.firstChild(node); child < flat.ruleBody(node); child = flat.end(child)) {
+                        result.copyLeaf(flat, child);
+                    }
+                    openNewScope();
+                    return true;
+                case FlatAST.IF_CLAUSE: {
+                    // Net als bij de objectboom komt de gekozen body in de plaats van de IfClause.
+                    int condition = flat.expression(node);
+                    Literal value = evaluateExpression(flat, condition);
+                    boolean isTrue = (value instanceof BoolLiteral) && ((BoolLiteral) value).value;
+                    int elseClause = flat.elseClause(node);
+                    if (isTrue) {
+                        chosenFirst = condition >= 0 ? flat.end(condition) : elseClause;
+                        chosenEnd = elseClause;
+                    } else if (elseClause < flat.end(node)) {
+                        chosenFirst = flat.firstChild(elseClause);
+                        chosenEnd = flat.end(elseClause);
+                    } else {
+                        chosenFirst = chosenEnd = flat.end(node);
+                    }
+                    return true;
+                }
+                case FlatAST.VARIABLE_ASSIGNMENT: {
+                    int name = flat.firstChild(node);
+                    int expression = flat.expression(node);
+                    result.begin(FlatAST.VARIABLE_ASSIGNMENT, 0);
+                    result.copyLeaf(flat, name);
+                    Literal value = evaluateExpression(flat, expression);
+                    result.append(value);
+                    result.end();
+                    defineVariable(flat.variableId(name), value);
+                    return false;
+                }
+                case FlatAST.DECLARATION: {
+                    int expression = flat.expression(node);
+                    result.begin(FlatAST.DECLARATION, 0);
+                    result.copyLeaf(flat, flat.firstChild(node));
+                    if (expression >= 0) {
+                        appendExpression(flat, expression);
+                    }
+                    result.end();
+                    return false;
+                }
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public int firstChild(FlatAST flat, int node) {
+            switch (flat.kind(node)) {
+                case FlatAST.STYLERULE: return flat.ruleBody(node);
+                case FlatAST.IF_CLAUSE: return chosenFirst;
+                default: return flat.firstChild(node);
+            }
+        }
+
+        @Override
+        public int childrenEnd(FlatAST flat, int node) {
+            return flat.kind(node) == FlatAST.IF_CLAUSE ? chosenEnd : flat.end(node);
+        }
+
+        @Override
+        public void exit(FlatAST flat, int node) {
+            if (flat.kind(node) == FlatAST.STYLERULE) {
+                closeCurrentScope();
+                result.end();
+            } else if (flat.kind(node) == FlatAST.STYLESHEET) {
+                result.end();
             }
         }
-        // px * scalar
-        if (lhs instanceof PixelLiteral && rhs instanceof ScalarLiteral && op.equals("*"))
-            return new PixelLiteral(((PixelLiteral) lhs).value * ((ScalarLiteral) rhs).value);
-        // scalar * px
-        if (lhs instanceof ScalarLiteral && rhs instanceof PixelLiteral && op.equals("*"))
-            return new PixelLiteral(((ScalarLiteral) lhs).value * ((PixelLiteral) rhs).value);
-        // % * scalar
-        if (lhs instanceof PercentageLiteral && rhs instanceof ScalarLiteral && op.equals("*"))
-            return new PercentageLiteral(((PercentageLiteral) lhs).value * ((ScalarLiteral) rhs).value);
-        // scalar * %
-        if (lhs instanceof ScalarLiteral && rhs instanceof PercentageLiteral && op.equals("*"))
-            return new PercentageLiteral(((ScalarLiteral) lhs).value * ((PercentageLiteral) rhs).value);
-
-        // Onbekende of ongeldige combinatie → fallback naar scalar(0).
-        return new ScalarLiteral(0);
+
+        // Schrijft de waarde van de expressie in result. Een literal wordt zo gekopieerd,
+        // zonder er eerst een Literal van te maken.
+        private void appendExpression(FlatAST flat, int expression) {
+            if (FlatAST.isLiteral(flat.kind(expression))) {
+                result.copyLeaf(flat, expression);
+            } else {
+                result.append(evaluateExpression(flat, expression));
+            }
+        }
+    }
+
+    // Reken de expressie op positie node uit; 0 (scalar) als node -1 is.
+    private Literal evaluateExpression(FlatAST flat, int node) {
+        return values.evaluate(flat, node, variableValues);
     }
 }
@@ -0,0 +1,101 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.datastructures.SymbolTable;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+
+/**
+ * Rekent expressies uit naar een Literal, in een gewone AST en in een {@link FlatAST}, met
+ * dezelfde regels. De {@link Evaluator} en de Generator gebruiken allebei deze class, elk met hun
+ * eigen variabelen. Een onbekende variabele of ontbrekende operand telt als 0 (scalar).
+ */
+public class ExpressionEvaluator implements Traversal.Folder<Literal>, Traversal.FlatFolder<Literal> {
+
+    private final Traversal traversal;
+    private SymbolTable<Literal> variables; // Variabelen van de expressie die nu uitgerekend wordt
+    private VariableIds variableIds; // Ids van de AST die nu uitgerekend wordt, zie VariableIds.adopt
+
+    /**
+     * @param traversal de Traversal van de pass, zodat die zijn stacks kan hergebruiken
+     */
+    public ExpressionEvaluator(Traversal traversal) {
+        this.traversal = traversal;
+    }
+
+    /**
+     * Begint aan een nieuwe AST: de ids worden opnieuw van de variabelen overgenomen.
+     */
+    public void reset() {
+        variableIds = null;
+    }
+
+    /**
+     * @param reference een variabele uit de AST die nu uitgerekend wordt
+     * @return het id waarmee de variabele in de SymbolTable staat
+     */
+    public int variableId(VariableReference reference) {
+        variableIds = VariableIds.adopt(variableIds, reference);
+        return variableIds.idOf(reference);
+    }
+
+    /**
+     * @param expression de expressie, of null
+     * @param variables de waarden van de variabelen, opgezocht met hun id
+     * @return de waarde van de expressie
+     */
+    public Literal evaluate(Expression expression, SymbolTable<Literal> variables) {
+        this.variables = variables;
+        return traversal.fold(expression, this);
+    }
+
+    /**
+     * @param flat de AST
+     * @param node de expressie, of -1 als die ontbreekt
+     * @param variables de waarden van de variabelen, opgezocht met {@link FlatAST#variableId(int)}
+     * @return de waarde van de expressie
+     */
+    public Literal evaluate(FlatAST flat, int node, SymbolTable<Literal> variables) {
+        this.variables = variables;
+        return traversal.fold(flat, node, this);
+    }
+
+    @Override
+    public Literal leaf(Expression expression, Operation parent) {
+        if (expression instanceof Literal) {
+            return (Literal) expression;
+        }
+        if (expression instanceof VariableReference) {
+            return valueOf(variableId((VariableReference) expression));
+        }
+        return missing();
+    }
+
+    @Override
+    public Literal leaf(FlatAST flat, int node) {
+        byte kind = flat.kind(node);
+        if (FlatAST.isLiteral(kind)) {
+            return flat.toLiteral(node);
+        }
+        return kind == FlatAST.VARIABLE_REFERENCE ? valueOf(flat.variableId(node)) : missing();
+    }
+
+    private Literal valueOf(int variableId) {
+        Literal value = variables.lookup(variableId);
+        return value != null ? value : missing();
+    }
+
+    @Override
+    public Literal operation(Operation operation, Literal lhs, Literal rhs) {
+        return operation.getOperator().apply(lhs, rhs);
+    }
+
+    @Override
+    public Literal operation(FlatAST flat, int node, Literal lhs, Literal rhs) {
+        return FlatAST.operator(flat.kind(node)).apply(lhs, rhs);
+    }
+
+    @Override
+    public Literal missing() {
+        return ScalarLiteral.valueOf(0);
+    }
+}
@@ -3,5 +3,9 @@ package nl.han.ica.icss.transforms;
 import nl.han.ica.icss.ast.AST;
 
 public interface Transform {
-    void apply(AST ast);
+    /**
+     * @param ast de te transformeren AST, wordt niet veranderd
+     * @return een nieuwe AST, die de onveranderde subbomen van ast hergebruikt
+     */
+    AST apply(AST ast);
 }
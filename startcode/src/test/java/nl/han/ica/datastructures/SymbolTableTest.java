@@ -0,0 +1,53 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+
+	@Test
+	void testShadowingAndUndo() {
+		int width = 0;
+		int color = 1;
+		SymbolTable<String> symbols = new SymbolTable<>();
+		symbols.pushScope();
+		symbols.define(width, "global");
+
+		symbols.pushScope();
+		assertEquals("global", symbols.lookup(width));
+		symbols.define(width, "inner");
+		symbols.define(color, "inner");
+		symbols.define(width, "inner again");
+		assertEquals("inner again", symbols.lookup(width));
+
+		symbols.popScope();
+		assertEquals("global", symbols.lookup(width));
+		assertNull(symbols.lookup(color));
+		assertFalse(symbols.isDefined(color));
+		assertEquals(1, symbols.getDepth());
+	}
+
+	@Test
+	void testAssignUpdatesInnermostBinding() {
+		int width = 0;
+		int height = 1;
+		SymbolTable<String> symbols = new SymbolTable<>();
+		symbols.pushScope();
+		symbols.define(width, "global");
+
+		symbols.pushScope();
+		symbols.assign(width, "changed");
+		symbols.assign(height, "local");
+		symbols.popScope();
+
+		//The existing global binding was changed, the new variable was local
+		assertEquals("changed", symbols.lookup(width));
+		assertNull(symbols.lookup(height));
+	}
+
+	@Test
+	void testPopWithoutScope() {
+		assertThrows(IllegalStateException.class, () -> new SymbolTable<String>().popScope());
+	}
+}
@@ -0,0 +1,353 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.BinaryAST;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.parser.ParseProfile;
+import nl.han.ica.icss.trace.PrintTracer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineTest {
+
+	Path resourcePath(String resource) throws URISyntaxException {
+		ClassLoader classLoader = this.getClass().getClassLoader();
+		return Paths.get(classLoader.getResource(resource).toURI());
+	}
+
+	String resourceText(String resource) throws IOException {
+		try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.US_ASCII);
+		}
+	}
+
+	//Applies the edit incrementally and compares the result with a full parse of the new text
+	Pipeline assertEditMatchesFullParse(Pipeline pipeline, String text, int offset, int removed, String inserted) {
+		String edited = text.substring(0, offset) + inserted + text.substring(offset + removed);
+		pipeline.parseEdit(offset, removed, inserted);
+
+		Pipeline full = new Pipeline();
+		full.parseString(edited);
+		assertEquals(full.getAST(), pipeline.getAST());
+		assertEquals(full.getErrors(), pipeline.getErrors());
+		assertEquals(full.isParsed(), pipeline.isParsed());
+		return pipeline;
+	}
+
+	@Test
+	void testParseFile() throws IOException, URISyntaxException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseFile(resourcePath("level3.icss"));
+
+		assertTrue(pipeline.isParsed());
+		assertEquals(Fixtures.uncheckedLevel3(), pipeline.getAST());
+	}
+
+	@Test
+	void testParseChannel() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream("level2.icss")) {
+			pipeline.parseChannel(Channels.newChannel(inputStream));
+		}
+
+		assertTrue(pipeline.isParsed());
+		assertEquals(Fixtures.uncheckedLevel2(), pipeline.getAST());
+	}
+
+	@Test
+	void testParseFileChannelConsumesIt() throws IOException, URISyntaxException {
+		Pipeline pipeline = new Pipeline();
+		try (FileChannel channel = FileChannel.open(resourcePath("level1.icss"))) {
+			pipeline.parseChannel(channel);
+
+			//The mapped bytes count as read, like for any other channel
+			assertEquals(channel.size(), channel.position());
+			assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+		}
+		assertEquals(Fixtures.uncheckedLevel1(), pipeline.getAST());
+	}
+
+	@Test
+	void testTwoStageParsingUsesSLL() throws IOException, URISyntaxException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setTwoStageParsing(true);
+		pipeline.parseFile(resourcePath("level3.icss"));
+
+		assertTrue(pipeline.isParsed());
+		assertEquals(PredictionMode.SLL, pipeline.getPredictionMode());
+		assertEquals(Fixtures.uncheckedLevel3(), pipeline.getAST());
+	}
+
+	@Test
+	void testTwoStageParsingFallsBackToLL() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setTwoStageParsing(true);
+		pipeline.parseString("p { width: 10px }");
+
+		assertFalse(pipeline.isParsed());
+		assertEquals(PredictionMode.LL, pipeline.getPredictionMode());
+		assertFalse(pipeline.getErrors().isEmpty());
+	}
+
+	@Test
+	void testParseWithHandWrittenLexer() throws IOException, URISyntaxException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setHandWrittenLexer(true);
+		pipeline.parseFile(resourcePath("level3.icss"));
+
+		assertTrue(pipeline.isParsed());
+		assertEquals(Fixtures.uncheckedLevel3(), pipeline.getAST());
+	}
+
+	@Test
+	void testProfiling() throws IOException, URISyntaxException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setProfiling(true);
+		pipeline.parseFile(resourcePath("level3.icss"));
+		pipeline.parseFile(resourcePath("level2.icss"));
+
+		assertTrue(pipeline.isParsed());
+		assertEquals(Fixtures.uncheckedLevel2(), pipeline.getAST());
+		ParseProfile profile = pipeline.getParseProfile();
+		assertEquals(2, profile.getParses());
+		assertTrue(profile.getRuleCalls(ICSSParser.RULE_primaryExpr) > 0);
+		String report = profile.report();
+		for (String rule : ParseProfile.REPORTED_RULES) {
+			assertTrue(report.contains(rule), rule);
+		}
+		assertFalse(report.contains("stylesheet"));
+	}
+
+	@Test
+	void testProfilingCountsTheLLRetryOnce() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setProfiling(true);
+		pipeline.setTwoStageParsing(true);
+		pipeline.parseString("p { width: 10px }");
+
+		assertEquals(PredictionMode.LL, pipeline.getPredictionMode());
+		assertEquals(1, pipeline.getParseProfile().getRuleCalls(ICSSParser.RULE_stylesheet));
+		assertEquals(1, pipeline.getParseProfile().getRuleCalls(ICSSParser.RULE_ruleset));
+	}
+
+	//Parses the text in parallel and compares the result with a parse on one thread
+	Pipeline assertParallelMatchesSequential(String text) {
+		Pipeline parallel = new Pipeline();
+		parallel.setParallelParsing(true);
+		parallel.parseString(text);
+
+		Pipeline sequential = new Pipeline();
+		sequential.parseString(text);
+		assertEquals(sequential.getAST(), parallel.getAST());
+		assertEquals(sequential.getErrors(), parallel.getErrors());
+		assertEquals(sequential.isParsed(), parallel.isParsed());
+		return parallel;
+	}
+
+	@Test
+	void testParallelParsing() throws IOException {
+		String level3 = resourceText("level3.icss");
+		StringBuilder text = new StringBuilder();
+		while (text.length() < 100_000) {
+			text.append(level3).append('\n');
+		}
+		assertParallelMatchesSequential(text.toString());
+
+		//Errors far from the start must keep their line numbers
+		text.append("p {\n\twidth 10px;\n\theight: $;\n}\n");
+		text.append(level3);
+		Pipeline pipeline = assertParallelMatchesSequential(text.toString());
+		assertFalse(pipeline.isParsed());
+		assertFalse(pipeline.getErrors().isEmpty());
+		assertTrue(pipeline.getErrors().get(0).startsWith("Syntax error: line "), pipeline.getErrors().get(0));
+	}
+
+	@Test
+	void testParseEdit() throws IOException {
+		String text = resourceText("level3.icss");
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(text);
+
+		//Change a value inside a ruleset
+		int offset = text.indexOf("20px");
+		assertEditMatchesFullParse(pipeline, text, offset, 2, "35");
+		text = text.substring(0, offset) + "35" + text.substring(offset + 2);
+
+		//Insert a new ruleset between two others
+		offset = text.indexOf("#menu");
+		assertEditMatchesFullParse(pipeline, text, offset, 0, "h1 { width: 10px; }\n");
+		text = text.substring(0, offset) + "h1 { width: 10px; }\n" + text.substring(offset);
+
+		//Remove a variable assignment
+		offset = text.indexOf("UseLinkColor := FALSE;");
+		assertEditMatchesFullParse(pipeline, text, offset, "UseLinkColor := FALSE;".length(), "");
+	}
+
+	//Applies the edit, checks and compares the errors with checking a full parse of the new text
+	void assertCheckAfterEditMatchesFullCheck(Pipeline pipeline, String text, String old, String replacement) {
+		int offset = text.indexOf(old);
+		pipeline.parseEdit(offset, old.length(), replacement);
+		pipeline.check();
+
+		Pipeline full = new Pipeline();
+		full.parseString(text.substring(0, offset) + replacement + text.substring(offset + old.length()));
+		full.check();
+		assertEquals(full.getErrors(), pipeline.getErrors());
+		assertEquals(full.isChecked(), pipeline.isChecked());
+	}
+
+	@Test
+	void testCheckAfterParseEdit() {
+		String text = "Size := 10px;\nMain := #ff0000;\np { width: Size; }\na { color: Main; height: Size + 1px; }\nh1 { color: Size; }\n";
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(text);
+		pipeline.check();
+		assertEquals(1, pipeline.getErrors().size());
+
+		//Change the type of a variable, remove it, define it again and fix the last rule
+		String[][] edits = {{"10px", "#00ff00"}, {"Size := #00ff00;", ""}, {"Main := #ff0000;", "Main := #ff0000;\nSize := 5%;"},
+				{"h1 { color: Size; }", "h1 { color: Main; }"}, {"p {", "Main := 1px;\np {"}};
+		for (String[] edit : edits) {
+			assertCheckAfterEditMatchesFullCheck(pipeline, text, edit[0], edit[1]);
+			text = text.replace(edit[0], edit[1]);
+		}
+		assertFalse(pipeline.getErrors().isEmpty());
+	}
+
+	@Test
+	void testParseEditFallsBackOnUnbalancedBraces() throws IOException {
+		String text = resourceText("level0.icss");
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(text);
+
+		int offset = text.indexOf("}");
+		assertEditMatchesFullParse(pipeline, text, offset, 1, "");
+		assertFalse(pipeline.isParsed());
+
+		//Restoring the brace gives a clean parse again
+		String broken = text.substring(0, offset) + text.substring(offset + 1);
+		assertEditMatchesFullParse(pipeline, broken, offset, 0, "}");
+		assertTrue(pipeline.isParsed());
+		assertEquals(Fixtures.uncheckedLevel0(), pipeline.getAST());
+	}
+
+	@Test
+	void testReparseString() throws IOException {
+		String text = resourceText("level2.icss");
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(text);
+		pipeline.reparseString(text.replace("520px", "1px"));
+		pipeline.reparseString(text);
+
+		assertTrue(pipeline.isParsed());
+		assertEquals(Fixtures.uncheckedLevel2(), pipeline.getAST());
+	}
+
+	@Test
+	void testTracer() throws IOException {
+		ByteArrayOutputStream trace = new ByteArrayOutputStream();
+		Pipeline pipeline = new Pipeline();
+		pipeline.setTracer(new PrintTracer(new PrintStream(trace, true, StandardCharsets.UTF_8)));
+		pipeline.parseString(resourceText("level2.icss"));
+		pipeline.check();
+		pipeline.transform();
+		String text = trace.toString(StandardCharsets.UTF_8);
+
+		assertTrue(text.contains("=== transform ==="));
+		assertTrue(text.contains("Evaluating node: Declaration"));
+		assertTrue(text.contains("= Pixel literal (520)"));
+		assertTrue(text.contains("=== AST na transform ==="));
+
+		//Without a tracer nothing is written
+		pipeline.setTracer(null);
+		int length = trace.size();
+		pipeline.transform();
+		assertEquals(length, trace.size());
+	}
+
+	@Test
+	void testCompileStream() throws IOException {
+		String text = resourceText("level3.icss");
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(text);
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		String expected = pipeline.generate();
+
+		StringWriter output = new StringWriter();
+		assertTrue(new Pipeline().compileStream(new StringReader(text), output));
+		assertEquals(expected, output.toString());
+	}
+
+	@Test
+	void testCompileStreamReportsErrors() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		StringWriter output = new StringWriter();
+
+		assertFalse(pipeline.compileStream(new StringReader("p { width: Undefined; }\na { color: 10px; }\nb {"), output));
+		assertEquals(List.of(
+				"ERROR: Property width verwacht een numerieke waarde (px of %).",
+				"ERROR: Variabele Undefined is niet gedefinieerd.",
+				"ERROR: Property color verwacht een kleurwaarde.",
+				"Syntax error: line 3:3 mismatched input '<EOF>' expecting "
+						+ "{'color', 'background-color', 'width', 'height', 'if', '}', VARIABLE_IDENT}"), pipeline.getErrors());
+		assertEquals("", output.toString());
+	}
+
+	@Test
+	void testCompileStreamSkipsErrorsCausedByASyntaxError() throws IOException {
+		//W is assigned in an item that does not parse; a full parse only reports the syntax error
+		String text = "W := 10px\np { width: W; }\na { height: W; }\nH := W;\nb { height: H; color: 10px; }";
+		Pipeline full = new Pipeline();
+		full.parseString(text);
+
+		Pipeline pipeline = new Pipeline();
+		assertFalse(pipeline.compileStream(new StringReader(text), new StringWriter()));
+		List<String> expected = new ArrayList<>(full.getErrors());
+		expected.add("ERROR: Property color verwacht een kleurwaarde.");
+		assertEquals(expected, pipeline.getErrors());
+	}
+
+	@Test
+	void testSaveAndLoadBinary(@TempDir Path directory) throws IOException, URISyntaxException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseFile(resourcePath("level3.icss"));
+		assertTrue(pipeline.check());
+		Path binary = directory.resolve("level3" + BinaryAST.EXTENSION);
+		pipeline.saveBinary(binary);
+
+		Pipeline loaded = new Pipeline();
+		loaded.loadBinary(binary);
+		assertTrue(loaded.isParsed());
+		assertTrue(loaded.isChecked());
+		assertEquals(pipeline.getAST(), loaded.getAST());
+		assertEquals(pipeline.generate(), loaded.generate());
+
+		//Semantic errors are saved on their nodes
+		pipeline.parseString("p { width: Undefined; }");
+		assertFalse(pipeline.check());
+		pipeline.saveBinary(binary);
+		loaded.loadBinary(binary);
+		assertFalse(loaded.isChecked());
+		assertEquals(pipeline.getErrors(), loaded.getErrors());
+	}
+}
@@ -0,0 +1,87 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ASTNodeTest {
+
+	//Child count, indexed access and forEachChild must give the same children as getChildren
+	void assertSameChildren(ASTNode node) {
+		List<ASTNode> expected = node.getChildren();
+		assertEquals(expected.size(), node.getChildCount(), node.getNodeLabel());
+
+		List<ASTNode> indexed = new ArrayList<>();
+		for (int i = 0; i < node.getChildCount(); i++) {
+			indexed.add(node.getChild(i));
+		}
+		List<ASTNode> visited = new ArrayList<>();
+		node.forEachChild(visited::add);
+
+		assertEquals(expected, indexed, node.getNodeLabel());
+		assertEquals(expected, visited, node.getNodeLabel());
+		for (ASTNode child : expected) {
+			assertSameChildren(child);
+		}
+	}
+
+	@Test
+	void testChildTraversal() {
+		assertSameChildren(Fixtures.uncheckedLevel0().root);
+		assertSameChildren(Fixtures.uncheckedLevel1().root);
+		assertSameChildren(Fixtures.uncheckedLevel2().root);
+		assertSameChildren(Fixtures.uncheckedLevel3().root);
+	}
+
+	@Test
+	void testChildOutOfBounds() {
+		Declaration declaration = new Declaration("width");
+		assertEquals(1, declaration.getChildCount());
+		assertThrows(IndexOutOfBoundsException.class, () -> declaration.getChild(1));
+	}
+
+	//Answers the name of the visit method that was called
+	static class MethodNames implements ASTVisitor<String, Void> {
+		@Override public String visitStylesheet(Stylesheet node, Void context) { return "Stylesheet"; }
+		@Override public String visitStylerule(Stylerule node, Void context) { return "Stylerule"; }
+		@Override public String visitDeclaration(Declaration node, Void context) { return "Declaration"; }
+		@Override public String visitPropertyName(PropertyName node, Void context) { return "PropertyName"; }
+		@Override public String visitVariableAssignment(VariableAssignment node, Void context) { return "VariableAssignment"; }
+		@Override public String visitVariableReference(VariableReference node, Void context) { return "VariableReference"; }
+		@Override public String visitIfClause(IfClause node, Void context) { return "IfClause"; }
+		@Override public String visitElseClause(ElseClause node, Void context) { return "ElseClause"; }
+		@Override public String visitClassSelector(ClassSelector node, Void context) { return "ClassSelector"; }
+		@Override public String visitIdSelector(IdSelector node, Void context) { return "IdSelector"; }
+		@Override public String visitTagSelector(TagSelector node, Void context) { return "TagSelector"; }
+		@Override public String visitAddOperation(AddOperation node, Void context) { return "AddOperation"; }
+		@Override public String visitSubtractOperation(SubtractOperation node, Void context) { return "SubtractOperation"; }
+		@Override public String visitMultiplyOperation(MultiplyOperation node, Void context) { return "MultiplyOperation"; }
+		@Override public String visitBoolLiteral(BoolLiteral node, Void context) { return "BoolLiteral"; }
+		@Override public String visitColorLiteral(ColorLiteral node, Void context) { return "ColorLiteral"; }
+		@Override public String visitPercentageLiteral(PercentageLiteral node, Void context) { return "PercentageLiteral"; }
+		@Override public String visitPixelLiteral(PixelLiteral node, Void context) { return "PixelLiteral"; }
+		@Override public String visitScalarLiteral(ScalarLiteral node, Void context) { return "ScalarLiteral"; }
+	}
+
+	@Test
+	void testAcceptCallsTheMethodOfItsType() {
+		MethodNames names = new MethodNames();
+		List<ASTNode> nodes = new ArrayList<>(List.of(new PercentageLiteral(50), new SubtractOperation(),
+				new ClassSelector(".menu"), new IdSelector("#menu")));
+		new Traversal().walk(Fixtures.uncheckedLevel3().root, node -> nodes.add(node));
+		for (ASTNode node : nodes) {
+			assertEquals(node.getClass().getSimpleName(), node.accept(names, null));
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryASTTest {
+
+	AST roundTrip(AST ast, boolean checked) throws IOException {
+		ByteBuffer buffer = new BinaryAST(FlatAST.fromAST(ast), checked).encode();
+		BinaryAST decoded = BinaryAST.decode(buffer);
+		assertEquals(checked, decoded.isChecked());
+		assertFalse(buffer.hasRemaining());
+		return decoded.getAST().toAST();
+	}
+
+	@Test
+	void testRoundTrip() throws IOException {
+		assertEquals(Fixtures.uncheckedLevel0(), roundTrip(Fixtures.uncheckedLevel0(), false));
+		assertEquals(Fixtures.uncheckedLevel1(), roundTrip(Fixtures.uncheckedLevel1(), true));
+		assertEquals(Fixtures.uncheckedLevel2(), roundTrip(Fixtures.uncheckedLevel2(), false));
+		assertEquals(Fixtures.uncheckedLevel3(), roundTrip(Fixtures.uncheckedLevel3(), true));
+	}
+
+	@Test
+	void testNegativeValuesAndErrors() throws IOException {
+		AST ast = new AST();
+		Stylerule rule = new Stylerule();
+		Declaration declaration = new Declaration("width");
+		declaration.addChild(new PixelLiteral(-300000));
+		rule.addChild(declaration);
+		ast.root.addChild(rule);
+		declaration.setError("Foutje");
+
+		AST decoded = roundTrip(ast, false);
+		assertEquals(ast, decoded);
+		assertEquals(ast.getErrors().toString(), decoded.getErrors().toString());
+	}
+
+	@Test
+	void testInvalidInput() {
+		ByteBuffer valid = new BinaryAST(FlatAST.fromAST(Fixtures.uncheckedLevel1()), false).encode();
+
+		ByteBuffer wrongMagic = ByteBuffer.wrap(new byte[]{'I', 'C', 'S', 'S', 1, 0, 0});
+		assertThrows(IOException.class, () -> BinaryAST.decode(wrongMagic));
+
+		ByteBuffer wrongVersion = ByteBuffer.allocate(valid.limit()).put(valid.duplicate());
+		wrongVersion.put(4, (byte) (BinaryAST.VERSION + 1)).flip();
+		assertThrows(IOException.class, () -> BinaryAST.decode(wrongVersion));
+
+		ByteBuffer truncated = valid.duplicate().limit(valid.limit() / 2);
+		assertThrows(IOException.class, () -> BinaryAST.decode(truncated));
+	}
+}
@@ -0,0 +1,130 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatASTTest {
+
+	List<AST> fixtures() {
+		return List.of(Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3());
+	}
+
+	//Compares errors by description, SemanticError has no equals
+	void assertSameErrors(AST expected, FlatAST actual) {
+		assertEquals(expected.getErrors().toString(), actual.getErrors().toString());
+	}
+
+	@Test
+	void testRoundTrip() {
+		for (AST ast : fixtures()) {
+			FlatAST flat = FlatAST.fromAST(ast);
+			assertEquals(ast, flat.toAST());
+			assertEquals(ast.root.getChildCount(), flat.childCount(flat.root()));
+		}
+	}
+
+	@Test
+	void testStringsAreInterned() {
+		FlatAST flat = FlatAST.fromAST(Fixtures.uncheckedLevel3());
+		int first = -1;
+		for (int node = 0; node < flat.size(); node++) {
+			if (flat.kind(node) == FlatAST.PROPERTY_NAME && flat.text(node).equals("width")) {
+				if (first < 0) first = node;
+				assertEquals(flat.textId(first), flat.textId(node));
+			}
+		}
+		assertTrue(first >= 0);
+	}
+
+	@Test
+	void testVariableIds() {
+		FlatAST flat = FlatAST.fromAST(Fixtures.uncheckedLevel3());
+		int references = 0;
+		for (int node = 0; node < flat.size(); node++) {
+			if (flat.kind(node) == FlatAST.VARIABLE_REFERENCE) {
+				//The id of the name in the string table of this AST
+				assertEquals(flat.intern(flat.text(node)), flat.variableId(node));
+				assertTrue(flat.variableId(node) < flat.stringCount());
+				references++;
+			}
+		}
+		assertTrue(references > 0);
+	}
+
+	@Test
+	void testCheckMatchesObjectAST() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("Size := 10px;\np {\n\tcolor: Size;\n\twidth: #ff0000 + 2px;\n\tif [Missing] { height: 1; }\n}\n");
+		assertTrue(pipeline.isParsed());
+		FlatAST flat = FlatAST.fromAST(pipeline.getAST());
+
+		new Checker().check(pipeline.getAST());
+		new Checker().check(flat);
+		assertSameErrors(pipeline.getAST(), flat);
+		assertFalse(flat.getErrors().isEmpty());
+
+		for (AST ast : fixtures()) {
+			FlatAST checked = FlatAST.fromAST(ast);
+			new Checker().check(ast);
+			new Checker().check(checked);
+			assertSameErrors(ast, checked);
+		}
+	}
+
+	@Test
+	void testEvaluateAndGenerateMatchObjectAST() {
+		for (AST ast : fixtures()) {
+			FlatAST flat = FlatAST.fromAST(ast);
+			String expected = new Generator().generate(ast);
+			assertEquals(expected, new Generator().generate(flat));
+
+			AST objectEvaluated = new Evaluator().apply(ast);
+			FlatAST evaluated = new Evaluator().apply(flat);
+			assertEquals(objectEvaluated, evaluated.toAST());
+			assertEquals(expected, new Generator().generate(evaluated));
+		}
+	}
+
+	@Test
+	void testDeepNestingAndLongChains() {
+		//p { if [TRUE] { if [TRUE] { ... width: 1px + 1px + ... } } } with 10000 ifs and 100000 terms
+		FlatAST flat = new FlatAST();
+		flat.begin(FlatAST.STYLESHEET, 0);
+		flat.begin(FlatAST.STYLERULE, 0);
+		flat.leaf(FlatAST.TAG_SELECTOR, flat.intern("p"));
+		for (int i = 0; i < 10000; i++) {
+			flat.begin(FlatAST.IF_CLAUSE, 0);
+			flat.leaf(FlatAST.BOOL_LITERAL, 1);
+		}
+		flat.begin(FlatAST.DECLARATION, 0);
+		flat.leaf(FlatAST.PROPERTY_NAME, flat.intern("width"));
+		for (int i = 1; i < 100000; i++) {
+			flat.begin(FlatAST.ADD_OPERATION, 0);
+		}
+		flat.leaf(FlatAST.PIXEL_LITERAL, 1);
+		for (int i = 1; i < 100000; i++) {
+			flat.leaf(FlatAST.PIXEL_LITERAL, 1);
+			flat.end();
+		}
+		for (int i = 0; i < 10000 + 3; i++) {
+			flat.end();
+		}
+
+		new Checker().check(flat);
+		assertFalse(flat.hasErrors());
+		String expected = "p {\n  width: 100000px;\n}";
+		assertEquals(expected, new Generator().generate(flat));
+		FlatAST evaluated = new Evaluator().apply(flat);
+		assertEquals(expected, new Generator().generate(evaluated));
+		assertEquals(FlatAST.PIXEL_LITERAL, evaluated.kind(evaluated.size() - 1));
+	}
+}
@@ -0,0 +1,86 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeTableTest {
+
+	Expression sum(int pixels, String variable) {
+		return (Expression) new AddOperation()
+				.addChild(new PixelLiteral(pixels))
+				.addChild(new VariableReference(variable));
+	}
+
+	@Test
+	void testEqualStructuresAreShared() {
+		NodeTable table = new NodeTable();
+		Expression first = table.intern(sum(10, "Width"));
+		Expression second = table.intern(sum(10, "Width"));
+
+		assertSame(first, second);
+		assertTrue(first.isInterned());
+		assertNotSame(first, table.intern(sum(20, "Width")));
+		assertEquals(5, table.size()); // 10px, 20px, Width and both sums
+	}
+
+	@Test
+	void testOperationKindIsPartOfTheStructure() {
+		NodeTable table = new NodeTable();
+		Expression add = table.intern((Expression) new AddOperation()
+				.addChild(new ScalarLiteral(2)).addChild(new ScalarLiteral(3)));
+		Expression multiply = table.intern((Expression) new MultiplyOperation()
+				.addChild(new ScalarLiteral(2)).addChild(new ScalarLiteral(3)));
+		assertNotEquals(add, multiply);
+	}
+
+	@Test
+	void testInternedASTEqualsOriginal() {
+		AST ast = Fixtures.uncheckedLevel3();
+		NodeTable table = new NodeTable();
+		table.internAll(ast);
+
+		assertEquals(Fixtures.uncheckedLevel3(), ast);
+		assertEquals(Fixtures.uncheckedLevel3().hashCode(), ast.hashCode());
+
+		//The same document interned twice shares every declaration
+		AST again = Fixtures.uncheckedLevel3();
+		table.internAll(again);
+		Stylerule rule = (Stylerule) ast.root.body.get(4);
+		Stylerule ruleAgain = (Stylerule) again.root.body.get(4);
+		assertSame(rule.body.get(0), ruleAgain.body.get(0));
+	}
+
+	@Test
+	void testInternAllReachesIfAndElseBodies() {
+		Declaration width = new Declaration("width");
+		width.addChild(new PixelLiteral(10));
+		Declaration elseWidth = new Declaration("width");
+		elseWidth.addChild(new PixelLiteral(10));
+		IfClause ifClause = new IfClause();
+		ifClause.addChild(new VariableReference("UseWidth"));
+		ifClause.addChild(width);
+		ifClause.addChild(new ElseClause().addChild(elseWidth));
+		AST ast = Fixtures.rule(ifClause);
+
+		new NodeTable().internAll(ast);
+
+		assertTrue(ifClause.conditionalExpression.isInterned());
+		assertTrue(ifClause.body.get(0).isInterned());
+		assertSame(ifClause.body.get(0), ifClause.elseClause.body.get(0));
+	}
+
+	@Test
+	void testDeclarationsWithDifferentPropertiesDiffer() {
+		Declaration width = new Declaration("width");
+		width.addChild(new PixelLiteral(10));
+		Declaration height = new Declaration("height");
+		height.addChild(new PixelLiteral(10));
+		assertNotEquals(width, height);
+	}
+}
@@ -0,0 +1,233 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraversalTest {
+
+	//Reference: the order of a recursive pre-order traversal
+	void collectRecursive(ASTNode node, List<ASTNode> nodes) {
+		nodes.add(node);
+		node.forEachChild(child -> collectRecursive(child, nodes));
+	}
+
+	@Test
+	void testWalkOrder() {
+		Stylesheet root = Fixtures.uncheckedLevel3().root;
+		List<ASTNode> expected = new ArrayList<>();
+		collectRecursive(root, expected);
+
+		List<ASTNode> entered = new ArrayList<>();
+		List<ASTNode> exited = new ArrayList<>();
+		new Traversal().walk(root, new Traversal.Walker() {
+			@Override
+			public boolean enter(ASTNode node) {
+				entered.add(node);
+				return true;
+			}
+
+			@Override
+			public void exit(ASTNode node) {
+				exited.add(node);
+			}
+		});
+
+		assertEquals(expected, entered);
+		assertEquals(expected.size(), exited.size());
+		assertSame(root, exited.get(exited.size() - 1));
+	}
+
+	@Test
+	void testWalkSkipsChildren() {
+		Stylesheet root = Fixtures.uncheckedLevel3().root;
+		List<ASTNode> entered = new ArrayList<>();
+		new Traversal().walk(root, node -> {
+			entered.add(node);
+			return node instanceof Stylesheet;
+		});
+
+		assertEquals(root.getChildCount() + 1, entered.size());
+	}
+
+	@Test
+	void testNestedWalkOnSameTraversal() {
+		Stylesheet root = Fixtures.uncheckedLevel1().root;
+		Set<ASTNode> items = Collections.newSetFromMap(new IdentityHashMap<>());
+		items.addAll(root.body);
+		Traversal traversal = new Traversal();
+		int[] counts = new int[2];
+		traversal.walk(root, node -> {
+			counts[0]++;
+			//Count the subtree of every top-level item again with the same stacks
+			if (items.contains(node)) {
+				traversal.walk(node, child -> ++counts[1] > 0);
+			}
+			return true;
+		});
+
+		List<ASTNode> all = new ArrayList<>();
+		collectRecursive(root, all);
+		assertEquals(all.size(), counts[0]);
+		assertEquals(all.size() - 1, counts[1]);
+	}
+
+	//Records every statement with its phase; selectors and expressions are skipped by VisitingWalker
+	static class PhaseRecorder extends Traversal.VisitingWalker {
+		final List<String> visits = new ArrayList<>();
+
+		Boolean record(ASTNode node, Phase phase, boolean children) {
+			visits.add(phase + " " + node.getNodeLabel());
+			return children;
+		}
+
+		@Override
+		public Boolean visitStylesheet(Stylesheet node, Phase phase) {
+			return record(node, phase, true);
+		}
+
+		@Override
+		public Boolean visitStylerule(Stylerule node, Phase phase) {
+			return record(node, phase, true);
+		}
+
+		@Override
+		public Boolean visitIfClause(IfClause node, Phase phase) {
+			//Only the body, not the else
+			if (phase == Phase.ENTER) {
+				visitChildren(node.body);
+			}
+			return record(node, phase, true);
+		}
+
+		@Override
+		public Boolean visitElseClause(ElseClause node, Phase phase) {
+			return record(node, phase, true);
+		}
+
+		@Override
+		public Boolean visitVariableAssignment(VariableAssignment node, Phase phase) {
+			return record(node, phase, false);
+		}
+
+		@Override
+		public Boolean visitDeclaration(Declaration node, Phase phase) {
+			return record(node, phase, false);
+		}
+	}
+
+	@Test
+	void testVisitingWalkerDispatchesStatements() {
+		IfClause ifClause = new IfClause();
+		ifClause.addChild(new VariableReference("UseColor"));
+		ifClause.addChild(new Declaration("width"));
+		ifClause.addChild(new ElseClause().addChild(new Declaration("height")));
+		PhaseRecorder recorder = new PhaseRecorder();
+		new Traversal().walk(Fixtures.rule(ifClause).root, recorder);
+
+		assertEquals(List.of("ENTER Stylesheet", "ENTER Stylerule", "ENTER If_Clause", "ENTER Declaration",
+				"EXIT If_Clause", "EXIT Stylerule", "EXIT Stylesheet"), recorder.visits);
+	}
+
+	@Test
+	void testFoldLongChain() {
+		//1px - 1px + 1px - ... with 100000 terms, left-deep like the parser builds it
+		int length = 100000;
+		Expression expression = new PixelLiteral(1);
+		for (int i = 1; i < length; i++) {
+			Operation operation = i % 2 == 1 ? new SubtractOperation() : new AddOperation();
+			expression = (Expression) operation.addChild(expression).addChild(new PixelLiteral(1));
+		}
+
+		Integer value = new Traversal().fold(expression, new Traversal.Folder<Integer>() {
+			@Override
+			public Integer leaf(Expression leaf, Operation parent) {
+				return ((PixelLiteral) leaf).value;
+			}
+
+			@Override
+			public Integer operation(Operation operation, Integer lhs, Integer rhs) {
+				return operation.getOperator().compute(lhs, rhs);
+			}
+
+			@Override
+			public Integer missing() {
+				return 0;
+			}
+		});
+
+		assertEquals(length % 2, value);
+		assertNotNull(expression.toString());
+	}
+
+	@Test
+	void testFlatWalkOrder() {
+		FlatAST flat = FlatAST.fromAST(Fixtures.uncheckedLevel3());
+		List<Integer> entered = new ArrayList<>();
+		List<Integer> exited = new ArrayList<>();
+		new Traversal().walk(flat, flat.root(), new Traversal.FlatWalker() {
+			@Override
+			public boolean enter(FlatAST flat, int node) {
+				entered.add(node);
+				return true;
+			}
+
+			@Override
+			public void exit(FlatAST flat, int node) {
+				exited.add(node);
+			}
+		});
+
+		//Pre-order is the order of the positions
+		assertEquals(flat.size(), entered.size());
+		for (int node = 0; node < flat.size(); node++) {
+			assertEquals(node, entered.get(node));
+		}
+		assertEquals(flat.size(), exited.size());
+		assertEquals(flat.root(), exited.get(exited.size() - 1));
+	}
+
+	@Test
+	void testFlatFoldLongChain() {
+		//1px - 1px + 1px - ... with 100000 terms, left-deep like the parser builds it
+		int length = 100000;
+		FlatAST flat = new FlatAST();
+		for (int i = length - 1; i >= 1; i--) {
+			flat.begin(i % 2 == 1 ? FlatAST.SUBTRACT_OPERATION : FlatAST.ADD_OPERATION, 0);
+		}
+		flat.leaf(FlatAST.PIXEL_LITERAL, 1);
+		for (int i = 1; i < length; i++) {
+			flat.leaf(FlatAST.PIXEL_LITERAL, 1);
+			flat.end();
+		}
+
+		List<Integer> leaves = new ArrayList<>();
+		Integer value = new Traversal().fold(flat, flat.root(), new Traversal.FlatFolder<Integer>() {
+			@Override
+			public Integer leaf(FlatAST flat, int node) {
+				leaves.add(node);
+				return flat.intValue(node);
+			}
+
+			@Override
+			public Integer operation(FlatAST flat, int node, Integer lhs, Integer rhs) {
+				return FlatAST.operator(flat.kind(node)).compute(lhs, rhs);
+			}
+
+			@Override
+			public Integer missing() {
+				return 0;
+			}
+		});
+
+		assertEquals(length % 2, value);
+		assertEquals(length, leaves.size());
+		assertTrue(leaves.get(0) < leaves.get(1));
+	}
+}
@@ -0,0 +1,46 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.Pipeline;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VariableIdsTest {
+
+	@Test
+	void testIdsAreInterned() {
+		VariableIds ids = new VariableIds();
+		assertEquals(new VariableReference("ParWidth", ids).id, ids.idOf("ParWidth"));
+		assertNotEquals(ids.idOf("A"), ids.idOf("B"));
+		assertEquals(3, ids.size());
+		assertEquals(-1, ids.find("Missing"));
+		assertEquals(-1, new VariableReference("ParWidth").id);
+	}
+
+	@Test
+	void testReferenceFromOtherTable() {
+		VariableIds ids = new VariableIds();
+		ids.idOf("A");
+		VariableReference other = new VariableReference("B", new VariableIds());
+		//Looked up by name, the id of the other table is 0 as well
+		assertEquals(1, ids.idOf(other));
+		assertEquals(1, ids.idOf(new VariableReference("B")));
+	}
+
+	@Test
+	void testEachParseHasItsOwnTable() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("A := 1px;\nB := A;\n");
+		VariableAssignment b = (VariableAssignment) pipeline.getAST().root.body.get(1);
+		VariableReference a = (VariableReference) b.expression;
+		assertSame(b.name.ids, a.ids);
+		assertEquals(2, a.ids.size());
+
+		//Names of an earlier parse do not take up ids
+		pipeline.parseString("C := 2px;\n");
+		VariableReference c = ((VariableAssignment) pipeline.getAST().root.body.get(0)).name;
+		assertNotSame(a.ids, c.ids);
+		assertEquals(0, c.id);
+		assertEquals(1, c.ids.size());
+	}
+}
@@ -0,0 +1,37 @@
+package nl.han.ica.icss.ast.literals;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiteralTest {
+
+	@Test
+	void testSmallValuesAreShared() {
+		assertSame(PixelLiteral.valueOf(20), PixelLiteral.valueOf(20));
+		assertSame(PercentageLiteral.valueOf(-5), PercentageLiteral.valueOf(-5));
+		assertSame(ScalarLiteral.valueOf(0), ScalarLiteral.valueOf(0));
+		assertSame(BoolLiteral.TRUE, BoolLiteral.valueOf(true));
+		assertSame(ColorLiteral.valueOf("#ff0000"), ColorLiteral.valueOf("#ff0000"));
+
+		//Outside the cache values are still equal
+		assertNotSame(PixelLiteral.valueOf(100000), PixelLiteral.valueOf(100000));
+		assertEquals(PixelLiteral.valueOf(100000), PixelLiteral.valueOf(100000));
+		assertEquals(new PixelLiteral(20), PixelLiteral.valueOf(20));
+	}
+
+	@Test
+	void testEvaluatorUsesSharedLiterals() {
+		AST ast = new Evaluator().apply(Fixtures.uncheckedLevel2());
+
+		//#menu { width: ParWidth + 2 * 10px; } evaluates to the shared 520px
+		Stylerule menu = (Stylerule) ast.root.body.get(6);
+		Declaration width = (Declaration) menu.body.get(0);
+		assertSame(PixelLiteral.valueOf(520), width.expression);
+	}
+}
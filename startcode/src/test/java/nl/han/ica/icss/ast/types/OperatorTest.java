@@ -0,0 +1,53 @@
+package nl.han.ica.icss.ast.types;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Expression;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperatorTest {
+
+	@Test
+	void testResultTypes() {
+		assertEquals(ExpressionType.PIXEL, Operator.ADD.resultType(ExpressionType.PIXEL, ExpressionType.PIXEL));
+		assertEquals(ExpressionType.PERCENTAGE, Operator.SUBTRACT.resultType(ExpressionType.PERCENTAGE, ExpressionType.PERCENTAGE));
+		assertEquals(ExpressionType.PIXEL, Operator.MULTIPLY.resultType(ExpressionType.SCALAR, ExpressionType.PIXEL));
+		assertEquals(ExpressionType.PERCENTAGE, Operator.MULTIPLY.resultType(ExpressionType.PERCENTAGE, ExpressionType.SCALAR));
+		assertEquals(ExpressionType.SCALAR, Operator.MULTIPLY.resultType(ExpressionType.SCALAR, ExpressionType.SCALAR));
+
+		assertEquals(ExpressionType.UNDEFINED, Operator.ADD.resultType(ExpressionType.PIXEL, ExpressionType.SCALAR));
+		assertEquals(ExpressionType.UNDEFINED, Operator.MULTIPLY.resultType(ExpressionType.PIXEL, ExpressionType.PIXEL));
+		assertEquals(ExpressionType.UNDEFINED, Operator.ADD.resultType(ExpressionType.COLOR, ExpressionType.COLOR));
+		assertEquals(ExpressionType.UNDEFINED, Operator.SUBTRACT.resultType(ExpressionType.BOOL, ExpressionType.SCALAR));
+	}
+
+	@Test
+	void testApply() {
+		assertEquals(new PixelLiteral(30), Operator.MULTIPLY.apply(new ScalarLiteral(3), new PixelLiteral(10)));
+		assertEquals(new PercentageLiteral(-5), Operator.SUBTRACT.apply(new PercentageLiteral(5), new PercentageLiteral(10)));
+		assertEquals(new ScalarLiteral(7), Operator.ADD.apply(new ScalarLiteral(3), new ScalarLiteral(4)));
+		assertEquals(new ScalarLiteral(0), Operator.MULTIPLY.apply(new PixelLiteral(2), new PixelLiteral(3)));
+	}
+
+	@Test
+	void testCheckerEvaluatorAndGeneratorAgree() {
+		//10px * 2px: the checker reports it, the evaluator used to compute it as 10px - 2px
+		Expression expression = (Expression) new MultiplyOperation().addChild(new PixelLiteral(10)).addChild(new PixelLiteral(2));
+		AST ast = Fixtures.rule(new Declaration("width").addChild(expression));
+
+		new Checker().check(ast);
+		assertEquals("Bij * moet minstens één kant een scalar zijn.", expression.getError().description);
+		Stylerule evaluated = (Stylerule) new Evaluator().apply(ast).root.body.get(0);
+		assertEquals(new ScalarLiteral(0), ((Declaration) evaluated.body.get(0)).expression);
+		assertTrue(new Generator().generate(ast).contains("width: 0;"));
+	}
+}
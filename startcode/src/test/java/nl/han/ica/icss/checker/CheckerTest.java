@@ -0,0 +1,176 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PercentageLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckerTest {
+
+	//p { width: 1px + 1px + ... + 1px; } with a left-deep chain of additions
+	AST chain(int length) {
+		Expression expression = new PixelLiteral(1);
+		for (int i = 1; i < length; i++) {
+			expression = (Expression) new AddOperation().addChild(expression).addChild(new PixelLiteral(1));
+		}
+		return Fixtures.rule(new Declaration("width").addChild(expression));
+	}
+
+	@Test
+	void testLongChain() {
+		AST ast = chain(500);
+		Checker checker = new Checker();
+		checker.check(ast);
+
+		assertTrue(ast.getErrors().isEmpty());
+		Declaration width = (Declaration) ((Stylerule) ast.root.body.get(0)).body.get(0);
+		assertEquals(ExpressionType.PIXEL, checker.getType(width.expression));
+		assertEquals(ExpressionType.PIXEL, checker.getType(((Operation) width.expression).lhs));
+	}
+
+	@Test
+	void testDeepNestingAndLongChains() {
+		//10000 nested ifs around a declaration with a chain of 100000 terms, bounded only by heap
+		AST ast = chain(100000);
+		Stylerule rule = (Stylerule) ast.root.body.get(0);
+		ASTNode width = rule.body.remove(0);
+		ASTNode body = rule;
+		for (int i = 0; i < 10000; i++) {
+			IfClause ifClause = new IfClause();
+			ifClause.addChild(new BoolLiteral(true));
+			body.addChild(ifClause);
+			body = ifClause;
+		}
+		body.addChild(new Declaration("color").addChild(new PixelLiteral(1)));
+		body.addChild(width);
+		Checker checker = new Checker();
+		checker.check(ast);
+
+		assertEquals(1, ast.getErrors().size());
+		assertEquals(ExpressionType.PIXEL, checker.getType(((Declaration) width).expression));
+		assertTrue(ast.toString().startsWith("[Stylesheet|[Stylerule|[TagSelector p|][If_Clause|[Bool Literal (TRUE)|]"));
+	}
+
+	@Test
+	void testTypesOfLevel3() {
+		AST ast = Fixtures.uncheckedLevel3();
+		Checker checker = new Checker();
+		checker.check(ast);
+
+		assertTrue(ast.getErrors().isEmpty());
+		VariableAssignment linkColor = (VariableAssignment) ast.root.body.get(0);
+		assertEquals(ExpressionType.COLOR, checker.getType(linkColor.expression));
+		IfClause ifClause = (IfClause) ((Stylerule) ast.root.body.get(4)).body.get(2);
+		assertEquals(ExpressionType.BOOL, checker.getType(ifClause.conditionalExpression));
+		assertNull(checker.getType(new ScalarLiteral(1)));
+	}
+
+	@Test
+	void testErrorsUseComputedType() {
+		AST ast = Fixtures.rule(new Declaration("width").addChild(new MultiplyOperation()
+				.addChild(new PixelLiteral(2)).addChild(new ColorLiteral("#ffffff"))));
+		new Checker().check(ast);
+
+		//The operation and the declaration both report an error, based on the one computed type
+		assertEquals(2, ast.getErrors().size());
+	}
+
+	@Test
+	void testVisitThroughAccept() {
+		Checker checker = new Checker();
+		checker.begin();
+		assertEquals(ExpressionType.PERCENTAGE, new PercentageLiteral(50).accept(checker, null));
+		Expression sum = (Expression) new AddOperation().addChild(new PixelLiteral(1)).addChild(new PixelLiteral(2));
+		assertEquals(ExpressionType.PIXEL, sum.accept(checker, null));
+
+		//A statement is checked as a whole and has no type
+		Declaration color = (Declaration) new Declaration("color").addChild(new PixelLiteral(1));
+		assertNull(color.accept(checker, null));
+		assertEquals("Property color verwacht een kleurwaarde.", color.getError().description);
+	}
+
+	@Test
+	void testInternedASTIsRejected() {
+		//W is only defined in p; interned, both declarations are the same node
+		String source = "p { W := 10px; width: W; }\na { width: W; }\n";
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		AST interned = pipeline.getAST();
+		new NodeTable().internAll(interned);
+		Stylerule p = (Stylerule) interned.root.body.get(0);
+		Stylerule a = (Stylerule) interned.root.body.get(1);
+		assertSame(p.body.get(1), a.body.get(0));
+
+		assertThrows(IllegalArgumentException.class, () -> new Checker().check(interned));
+		assertTrue(interned.getErrors().isEmpty());
+
+		//Checked before interning, only the declaration in a is wrong
+		pipeline.parseString(source);
+		AST ast = pipeline.getAST();
+		new Checker().check(ast);
+		assertEquals("[ERROR: Property width verwacht een numerieke waarde (px of %)., ERROR: Variabele W is niet gedefinieerd.]",
+				ast.getErrors().toString());
+		assertTrue(((Stylerule) ast.root.body.get(1)).body.get(0).hasError());
+		assertFalse(((Stylerule) ast.root.body.get(0)).body.get(1).hasError());
+	}
+
+	@Test
+	void testUses() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("Size := 10px;\nDouble := Size * 2;\np { width: Size + 1px; height: Double; }\n");
+		AST ast = pipeline.getAST();
+		Checker checker = new Checker();
+		checker.check(ast);
+
+		List<ASTNode> uses = checker.getUses("Size");
+		Stylerule rule = (Stylerule) ast.root.body.get(2);
+		//The assignment of Size and the innermost nodes using it: the multiplication and the addition
+		assertEquals(3, uses.size());
+		assertTrue(uses.contains(ast.root.body.get(0)));
+		assertTrue(uses.contains(((VariableAssignment) ast.root.body.get(1)).expression));
+		assertTrue(uses.contains(((Declaration) rule.body.get(0)).expression));
+		List<ASTNode> doubleUses = checker.getUses("Double");
+		assertEquals(2, doubleUses.size());
+		assertTrue(doubleUses.containsAll(List.of(ast.root.body.get(1), rule.body.get(1))));
+		assertTrue(checker.getUses("Missing").isEmpty());
+	}
+
+	@Test
+	void testRecheckOnlyAffectedItems() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("Size := 10px;\nMain := #ff0000;\np { width: Size; }\na { color: Main; }\n");
+		AST ast = pipeline.getAST();
+		Checker checker = new Checker();
+		checker.check(ast);
+		assertTrue(ast.getErrors().isEmpty());
+
+		//Marker errors show which items are checked again
+		Declaration width = (Declaration) ((Stylerule) ast.root.body.get(2)).body.get(0);
+		Declaration color = (Declaration) ((Stylerule) ast.root.body.get(3)).body.get(0);
+		width.setError("marker");
+		color.setError("marker");
+
+		//Size becomes a color: only the rule using Size is checked again
+		ArrayList<ASTNode> body = new ArrayList<>(ast.root.body);
+		body.set(0, new VariableAssignment().addChild(new VariableReference("Size"))
+				.addChild(new ColorLiteral("#00ff00")));
+		AST edited = new AST(new Stylesheet(body));
+		checker.recheck(edited);
+
+		assertEquals("Property width verwacht een numerieke waarde (px of %).", width.getError().description);
+		assertEquals("marker", color.getError().description);
+	}
+}
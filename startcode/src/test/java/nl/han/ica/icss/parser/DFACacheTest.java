@@ -0,0 +1,67 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.Pipeline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DFACacheTest {
+
+	@AfterEach
+	void resetBound() {
+		DFACache.setMaxStates(0);
+	}
+
+	@Test
+	void testClearAndWarmUp() {
+		DFACache.clear();
+		assertEquals(0, DFACache.getStateCount());
+
+		DFACache.warmUp();
+		int[] counts = DFACache.getParserStateCounts();
+		assertEquals(ICSSParser._ATN.getNumberOfDecisions(), counts.length);
+		assertTrue(DFACache.getStateCount() > 0);
+		assertTrue(DFACache.report().contains("(ruleset)"));
+	}
+
+	@Test
+	void testParseAfterClear() {
+		DFACache.warmUp();
+		DFACache.clear();
+
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { width: 10px; }");
+		assertTrue(pipeline.isParsed());
+		assertTrue(DFACache.getStateCount() > 0);
+	}
+
+	@Test
+	void testMaxStates() {
+		DFACache.warmUp();
+		int clearCount = DFACache.getClearCount();
+		DFACache.setMaxStates(1);
+
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("a { color: #ffffff; }");
+		assertTrue(pipeline.isParsed());
+		assertEquals(0, DFACache.getStateCount());
+		assertEquals(clearCount + 1, DFACache.getClearCount());
+	}
+
+	@Test
+	void testTrimDoesNotWaitForRunningParses() {
+		DFACache.warmUp();
+		DFACache.setMaxStates(1);
+
+		//A parse holds the read lock: trim gives up instead of blocking
+		DFACache.beginParse();
+		try {
+			assertFalse(DFACache.trim());
+		} finally {
+			DFACache.endParse();
+		}
+		assertTrue(DFACache.trim());
+		assertEquals(0, DFACache.getStateCount());
+	}
+}
@@ -13,6 +13,22 @@ import nl.han.ica.icss.ast.selectors.TagSelector;
 
 public class Fixtures {
 
+	/*
+	p {
+		...body
+	}
+	*/
+	public static AST rule(ASTNode... body) {
+		Stylerule rule = new Stylerule();
+		rule.addChild(new TagSelector("p"));
+		for (ASTNode statement : body) {
+			rule.addChild(statement);
+		}
+		AST ast = new AST();
+		ast.root.addChild(rule);
+		return ast;
+	}
+
     public static AST uncheckedLevel0() {
 		Stylesheet stylesheet = new Stylesheet();
 		/*
@@ -0,0 +1,78 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LexerTest {
+
+	//Collects tokens and error messages as comparable strings
+	List<String> lex(TokenSource lexer) {
+		List<String> result = new ArrayList<>();
+		BaseErrorListener errorListener = new BaseErrorListener() {
+			public void syntaxError(Recognizer<?,?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+				result.add(line + ":" + charPositionInLine + " " + msg);
+			}
+		};
+		if (lexer instanceof ICSSLexer) {
+			((ICSSLexer) lexer).removeErrorListeners();
+			((ICSSLexer) lexer).addErrorListener(errorListener);
+		} else {
+			((Lexer) lexer).addErrorListener(errorListener);
+		}
+
+		Token token;
+		do {
+			token = lexer.nextToken();
+			result.add(token.getType() + " '" + token.getText() + "' " + token.getLine() + ":" + token.getCharPositionInLine()
+					+ " [" + token.getStartIndex() + "," + token.getStopIndex() + "]");
+		} while (token.getType() != Token.EOF);
+		return result;
+	}
+
+	void assertSameTokens(String input) {
+		List<String> expected = lex(new ICSSLexer(CharStreams.fromString(input)));
+		List<String> actual = lex(new Lexer(CharStreams.fromString(input)));
+		assertEquals(expected, actual, input);
+	}
+
+	@Test
+	void testLexLevels() throws IOException {
+		ClassLoader classLoader = this.getClass().getClassLoader();
+		for (String resource : new String[] {"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+			try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+				assertSameTokens(CharStreams.fromStream(inputStream).toString());
+			}
+		}
+	}
+
+	@Test
+	void testLexKeywordsAndIdentifiers() {
+		assertSameTokens("if ifx else elsewhere color colors width height background-color background");
+		assertSameTokens("TRUE TRUEX FALSE Var Var_1 V_ A9b x-y a--b");
+	}
+
+	@Test
+	void testLexNumbersAndColors() {
+		assertSameTokens("10px 10p 10pxa 50% 7 007 3px%");
+		assertSameTokens("#abcdef #abcdefa #abcde #abcdeg #menu #a-b .menu .a-1");
+	}
+
+	@Test
+	void testLexOperatorsAndPunctuation() {
+		assertSameTokens("X:=1;a{b:c}[()]+-*:: =");
+		assertSameTokens("p {\n\twidth: (2 + 3) * 10px;\r\n}\n");
+	}
+
+	@Test
+	void testLexRecognitionErrors() {
+		assertSameTokens("p { width: 10px; } _ $ #A .B #");
+		assertSameTokens("a\n  ! b ~\n.");
+	}
+}
@@ -0,0 +1,121 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluatorTest {
+
+	@Test
+	void testApplyDoesNotChangeTheAST() {
+		AST ast = Fixtures.uncheckedLevel3();
+		AST evaluated = new Evaluator().apply(ast);
+
+		assertEquals(Fixtures.uncheckedLevel3(), ast);
+		assertNotEquals(ast, evaluated);
+		assertEquals(evaluated, new Evaluator().apply(ast));
+	}
+
+	@Test
+	void testUnchangedSubtreesAreShared() {
+		AST ast = Fixtures.uncheckedLevel3();
+		AST evaluated = new Evaluator().apply(ast);
+
+		//a { color: LinkColor; } changes, .menu { color: #000000; ... } is shared as a whole
+		assertNotSame(ast.root.body.get(5), evaluated.root.body.get(5));
+		Stylerule menu = (Stylerule) ast.root.body.get(7);
+		Stylerule evaluatedMenu = (Stylerule) evaluated.root.body.get(7);
+		assertNotSame(menu, evaluatedMenu);
+		assertSame(menu.body.get(0), evaluatedMenu.body.get(0));
+		assertSame(menu.selectors.get(0), evaluatedMenu.selectors.get(0));
+
+		//Evaluating an evaluated AST changes nothing
+		assertSame(evaluated.root, new Evaluator().apply(evaluated).root);
+	}
+
+	@Test
+	void testConcurrentEvaluation() throws Exception {
+		AST ast = Fixtures.uncheckedLevel3();
+		String expected = new Generator().generate(new Evaluator().apply(ast));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				results.add(executor.submit(() -> new Generator().generate(new Evaluator().apply(ast))));
+			}
+			for (Future<String> result : results) {
+				assertEquals(expected, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(Fixtures.uncheckedLevel3(), ast);
+	}
+
+	@Test
+	void testManyConditionalsAreFlattenedInOrder() {
+		//p { if [TRUE] { width: 0px; if [FALSE] {...} else { width: 1px; } } ... } repeated
+		AST ast = Fixtures.rule();
+		Stylerule rule = (Stylerule) ast.root.body.get(0);
+		int count = 20000;
+		for (int i = 0; i < count; i++) {
+			IfClause inner = new IfClause();
+			inner.addChild(new BoolLiteral(false));
+			inner.addChild(new Declaration("height").addChild(new PixelLiteral(i)));
+			inner.addChild(new ElseClause().addChild(new Declaration("width").addChild(new PixelLiteral(2 * i + 1))));
+			IfClause outer = new IfClause();
+			outer.addChild(new BoolLiteral(true));
+			outer.addChild(new Declaration("width").addChild(new PixelLiteral(2 * i)));
+			outer.addChild(inner);
+			rule.addChild(outer);
+		}
+
+		Stylerule evaluated = (Stylerule) new Evaluator().apply(ast).root.body.get(0);
+		assertEquals(2 * count, evaluated.body.size());
+		for (int i = 0; i < evaluated.body.size(); i++) {
+			assertEquals(new PixelLiteral(i), ((Declaration) evaluated.body.get(i)).expression);
+		}
+	}
+
+	@Test
+	void testDeeplyNestedConditionals() {
+		//p { if [TRUE] { if [TRUE] { ... width: 1px + 1px + ... } } } with 10000 ifs and 100000 terms
+		Expression width = new PixelLiteral(1);
+		for (int i = 1; i < 100000; i++) {
+			width = (Expression) new AddOperation().addChild(width).addChild(new PixelLiteral(1));
+		}
+		AST ast = Fixtures.rule();
+		ASTNode body = ast.root.body.get(0);
+		for (int i = 0; i < 10000; i++) {
+			IfClause ifClause = new IfClause();
+			ifClause.addChild(new BoolLiteral(true));
+			body.addChild(ifClause);
+			body = ifClause;
+		}
+		body.addChild(new Declaration("width").addChild(width));
+
+		Stylerule evaluated = (Stylerule) new Evaluator().apply(ast).root.body.get(0);
+		assertEquals(1, evaluated.body.size());
+		assertEquals(new PixelLiteral(100000), ((Declaration) evaluated.body.get(0)).expression);
+		assertEquals("p {\n  width: 100000px;\n}", new Generator().generate(ast));
+	}
+
+	@Test
+	void testUnchangedBodyIsNotCopied() {
+		AST ast = Fixtures.uncheckedLevel0();
+		assertSame(ast.root, new Evaluator().apply(ast).root);
+	}
+}